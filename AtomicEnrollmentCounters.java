@@ -0,0 +1,81 @@
+// AtomicEnrollmentCounters.java - In-memory enrollment counters
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntUnaryOperator;
+
+// Holds the counts while the data is loaded and the journal replayed, before
+// the counter file takes over, and for good if that file cannot be opened.
+// Counters live in fixed-size segments, so growing for new subjects only adds
+// segments and never copies a count that a registration may be changing.
+public class AtomicEnrollmentCounters implements EnrollmentCounters {
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    
+    // segments is written before size, so readers that check size first see
+    // every segment it covers
+    private volatile AtomicIntegerArray[] segments = new AtomicIntegerArray[0];
+    private volatile int size;
+    
+    public AtomicEnrollmentCounters(int size, IntUnaryOperator initialCount) {
+        grow(size, initialCount);
+    }
+    
+    @Override
+    public int get(int ordinal) {
+        return segmentOf(ordinal).get(ordinal & (SEGMENT_SIZE - 1));
+    }
+    
+    @Override
+    public int tryIncrement(int ordinal, int maxCapacity) {
+        AtomicIntegerArray segment = segmentOf(ordinal);
+        int index = ordinal & (SEGMENT_SIZE - 1);
+        while (true) {
+            int current = segment.get(index);
+            if (maxCapacity != -1 && current >= maxCapacity) {
+                return -1;
+            }
+            if (segment.compareAndSet(index, current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+    
+    @Override
+    public void decrement(int ordinal) {
+        segmentOf(ordinal).decrementAndGet(ordinal & (SEGMENT_SIZE - 1));
+    }
+    
+    @Override
+    public void extend(List<Subject> catalogue, IntUnaryOperator initialCount) {
+        grow(catalogue.size(), initialCount);
+    }
+    
+    @Override
+    public void force() {
+        // nothing on disk
+    }
+    
+    private synchronized void grow(int newSize, IntUnaryOperator initialCount) {
+        int oldSize = size;
+        if (newSize <= oldSize) {
+            return;
+        }
+        AtomicIntegerArray[] grown = Arrays.copyOf(segments, (newSize + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+        for (int i = segments.length; i < grown.length; i++) {
+            grown[i] = new AtomicIntegerArray(SEGMENT_SIZE);
+        }
+        for (int ordinal = oldSize; ordinal < newSize; ordinal++) {
+            grown[ordinal >>> SEGMENT_BITS].set(ordinal & (SEGMENT_SIZE - 1), initialCount.applyAsInt(ordinal));
+        }
+        segments = grown;
+        size = newSize;
+    }
+    
+    private AtomicIntegerArray segmentOf(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("No counter for subject ordinal " + ordinal);
+        }
+        return segments[ordinal >>> SEGMENT_BITS];
+    }
+}
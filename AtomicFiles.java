@@ -0,0 +1,121 @@
+// AtomicFiles.java - Crash-safe whole-file replacement and torn-tail repair
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+// A data file is never truncated in place: the new content goes to a
+// temporary file in the same directory, which is forced to disk and then
+// renamed over the target, and the rename itself is made durable by forcing
+// the directory. A crash at any point leaves either the old file or the new
+// one, never a mix. Every record written here ends with a line break, so a
+// later append can never be glued onto the last row.
+public class AtomicFiles {
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    private static final int MAX_REPORTED_BYTES = 1024; // of a dropped torn row
+    
+    private AtomicFiles() {
+    }
+    
+    // Replaces the file with the header and lines, each terminated by "\n",
+    // through one buffered writer and a single force
+    public static void writeLines(Path target, String header, Iterable<String> lines) throws IOException {
+        Path temp = tempFor(target);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp),
+                                                                       StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+            writer.write(header);
+            writer.write('\n');
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+        commit(temp, target);
+    }
+    
+    // Named per process, since processes sharing a data directory may replace
+    // the same file at the same time
+    public static Path tempFor(Path target) {
+        return target.resolveSibling(target.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+    }
+    
+    // Forces a completely written temporary file, renames it over the target
+    // and makes the rename durable
+    public static void commit(Path temp, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+    
+    // Some platforms cannot open a directory for syncing; the rename is still
+    // atomic there, only its durability is left to the file system
+    private static void forceDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported here
+        }
+    }
+    
+    // A text file that does not end with a line break has a torn last row,
+    // cut short by an interrupted append. Its fields may be missing or cut
+    // mid-value, so the row is dropped: the file is truncated back to its
+    // last line break, and the dropped bytes are reported in case the row was
+    // typed in by hand without a final line break. A file without any line
+    // break holds at most a header, which is kept and terminated. Returns
+    // true if the file was changed.
+    public static boolean repairTornTail(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = lineEnd(channel, size);
+            if (end == size) {
+                return false;
+            }
+            if (end == 0) {
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}), size);
+                channel.force(true);
+                System.err.println("Terminated the only line in " + file);
+                return true;
+            }
+            ByteBuffer torn = ByteBuffer.allocate((int) Math.min(size - end, MAX_REPORTED_BYTES));
+            channel.read(torn, end);
+            channel.truncate(end);
+            channel.force(true);
+            System.err.println("Dropped unterminated last line of " + file + ": "
+                             + new String(torn.array(), 0, torn.position(), StandardCharsets.UTF_8));
+        }
+        return true;
+    }
+    
+    // Position just past the last line feed, or 0 if there is none
+    private static long lineEnd(FileChannel channel, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long end = size;
+        while (end > 0) {
+            long start = Math.max(0, end - probe.capacity());
+            probe.clear().limit((int) (end - start));
+            while (probe.hasRemaining() && channel.read(probe, start + probe.position()) >= 0) {
+                // keep reading
+            }
+            for (int i = probe.position() - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+}
@@ -2,42 +2,18 @@
 public class AuthenticationController {
     private Registration registration;
     
-    public AuthenticationController() {
-        this.registration = new Registration();
+    public AuthenticationController(Registration registration) {
+        this.registration = registration;
     }
     
     public boolean authenticate(String studentId) {
-        // Simple authentication - check if student exists and ID format is valid
-        if (!isValidStudentId(studentId)) {
-            System.out.println("Invalid student ID (must be 8 digits starting with 69)");
+        LoginStatus status = registration.checkLogin(studentId);
+        if (status != LoginStatus.OK) {
+            System.out.println(status.getMessage());
             return false;
         }
         
-        Student student = registration.getStudent(studentId);
-        if (student == null) {
-            System.out.println("Student ID not found in system");
-            return false;
-        }
-        
-        if (!student.isAgeValid()) {
-            System.out.println("Age requirement not met (must be at least 15 years old)");
-            return false;
-        }
-        
-        System.out.println("Login successful: " + student.getFullName());
+        System.out.println("Login successful: " + registration.getStudent(studentId).getFullName());
         return true;
     }
-    
-    private boolean isValidStudentId(String studentId) {
-        if (studentId == null || studentId.length() != 8) {
-            return false;
-        }
-        
-        try {
-            long id = Long.parseLong(studentId);
-            return studentId.startsWith("69");
-        } catch (NumberFormatException e) {
-            return false;
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,155 @@
+// AvailableSubjectsTableModel.java - Live table of the subjects a student has not registered for
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.table.AbstractTableModel;
+
+// Rows are the catalogue subjects the student is not registered for, in
+// catalogue order. Cells are read from the subjects and their counts when painted, so a
+// registration only needs an event for the rows it affects: the student's own
+// registration deletes that row and may unlock others, and anyone's
+// registration, or a seat given back, updates the capacity and status of that
+// subject's row.
+// Must only be used on the event dispatch thread.
+public class AvailableSubjectsTableModel extends AbstractTableModel {
+    public static final int STATUS_COLUMN = 6;
+    public static final int ACTION_COLUMN = 7;
+    private static final String[] COLUMNS = {"Subject ID", "Subject Name", "Credits", "Instructor",
+                                             "Prerequisite", "Capacity", "Status", "Action"};
+    
+    private final Registration registration;
+    private String studentId;
+    private final List<Subject> rows = new ArrayList<>();
+    private final List<RegistrationStatus> statuses = new ArrayList<>();
+    private final Map<String, Integer> rowOf = new HashMap<>(); // subjectId -> row
+    
+    public AvailableSubjectsTableModel(Registration registration) {
+        this.registration = registration;
+    }
+    
+    public String getStudentId() {
+        return studentId;
+    }
+    
+    // Rebuilds every row for the given student, or clears the table for null
+    public void load(String studentId) {
+        this.studentId = studentId;
+        rows.clear();
+        statuses.clear();
+        rowOf.clear();
+        if (studentId != null) {
+            registration.evaluateAll(studentId, (subject, status) -> {
+                if (status != RegistrationStatus.ALREADY_REGISTERED) {
+                    rowOf.put(subject.getSubjectId(), rows.size());
+                    rows.add(subject);
+                    statuses.add(status);
+                }
+            });
+        }
+        fireTableDataChanged();
+    }
+    
+    public void registrationAdded(String registeredStudentId, String subjectId) {
+        if (studentId == null) {
+            return;
+        }
+        Integer row = rowOf.get(subjectId);
+        
+        if (studentId.equals(registeredStudentId)) {
+            if (row != null) {
+                removeRow(row);
+            }
+            // A completed prerequisite can unlock other subjects
+            for (int i = 0; i < rows.size(); i++) {
+                if (statuses.get(i) == RegistrationStatus.PREREQ_MISSING) {
+                    refreshRow(i, false);
+                }
+            }
+        } else if (row != null) {
+            // Someone else took a seat: capacity changed, subject may now be full
+            refreshRow(row, true);
+        }
+    }
+    
+    // A seat was given back: capacity changed, subject may have room again
+    public void seatReleased(String subjectId) {
+        Integer row = studentId == null ? null : rowOf.get(subjectId);
+        if (row != null) {
+            refreshRow(row, true);
+        }
+    }
+    
+    private void removeRow(int row) {
+        rowOf.remove(rows.get(row).getSubjectId());
+        rows.remove(row);
+        statuses.remove(row);
+        for (int i = row; i < rows.size(); i++) {
+            rowOf.put(rows.get(i).getSubjectId(), i);
+        }
+        fireTableRowsDeleted(row, row);
+    }
+    
+    // Re-evaluates one row and fires one update if its status changed, or if
+    // its enrollment changed and the capacity column shows it
+    private void refreshRow(int row, boolean enrollmentChanged) {
+        Subject subject = rows.get(row);
+        RegistrationStatus status = registration.evaluate(studentId, subject.getSubjectId());
+        boolean changed = status != statuses.get(row);
+        if (changed) {
+            statuses.set(row, status);
+        }
+        if (changed || enrollmentChanged && subject.getMaxCapacity() != -1) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+    
+    public Subject getSubjectAt(int row) {
+        return rows.get(row);
+    }
+    
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == ACTION_COLUMN; // Only action column is editable
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        Subject subject = rows.get(row);
+        switch (column) {
+            case 0: return subject.getSubjectId();
+            case 1: return subject.getSubjectName();
+            case 2: return subject.getCredits();
+            case 3: return subject.getInstructor();
+            case 4: return subject.hasPrerequisite() ? subject.getPrerequisiteSubjectId() : "None";
+            case 5: return subject.getMaxCapacity() == -1 ? "Unlimited"
+                         : registration.getEnrollment(subject.getSubjectId()) + "/" + subject.getMaxCapacity();
+            case STATUS_COLUMN: return statusLabel(statuses.get(row));
+            default: return "Register";
+        }
+    }
+    
+    private static String statusLabel(RegistrationStatus status) {
+        switch (status) {
+            case OK: return "Available";
+            case FULL: return "FULL";
+            case PREREQ_MISSING: return "Locked";
+            default: return "Cannot Register";
+        }
+    }
+}
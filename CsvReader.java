@@ -0,0 +1,310 @@
+// CsvReader.java - Streaming, quote-aware CSV tokenizer over NIO buffers
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+// Reads RFC 4180 CSV (quoted fields may contain commas, doubled quotes and line
+// breaks) straight from a FileChannel into one reused read buffer and one reused
+// Row. No regex, no String[] per line: a field only becomes a String when the
+// handler asks for it, and numbers and dates can be parsed from the raw bytes.
+public class CsvReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    // Tokenizer states
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    
+    // Receives each data row; the row is reused and only valid during the call
+    public interface RowHandler {
+        void onRow(Row row);
+    }
+    
+    private final byte[] readBuffer = new byte[BUFFER_SIZE];
+    private final Row row = new Row();
+    private final LongConsumer progress; // receives the number of bytes read, may be null
+    
+    public CsvReader() {
+        this(null);
+    }
+    
+    public CsvReader(LongConsumer progress) {
+        this.progress = progress;
+    }
+    
+    // Parses the whole file and returns the number of data rows handed to the handler
+    public long read(Path path, boolean skipHeader, RowHandler handler) throws IOException {
+        return read(path, 0, Long.MAX_VALUE, skipHeader, handler);
+    }
+    
+    // Parses the bytes in [start, end), which must begin and end on line boundaries
+    public long read(Path path, long start, long end, boolean skipHeader, RowHandler handler) throws IOException {
+        long rows = 0;
+        boolean headerPending = skipHeader;
+        boolean firstChunk = start == 0;
+        boolean skipLineFeed = false;
+        int state = FIELD_START;
+        row.reset();
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.position(start);
+            long remaining = end - start;
+            ByteBuffer buffer = ByteBuffer.wrap(readBuffer);
+            while (remaining > 0) {
+                buffer.clear();
+                if (remaining < BUFFER_SIZE) {
+                    buffer.limit((int) remaining);
+                }
+                int count = channel.read(buffer);
+                if (count == -1) {
+                    break;
+                }
+                remaining -= count;
+                if (progress != null) {
+                    progress.accept(count);
+                }
+                
+                int i = 0;
+                if (firstChunk) {
+                    firstChunk = false;
+                    if (count >= 3 && readBuffer[0] == (byte) 0xEF
+                            && readBuffer[1] == (byte) 0xBB && readBuffer[2] == (byte) 0xBF) {
+                        i = 3; // UTF-8 byte order mark
+                    }
+                }
+                
+                for (; i < count; i++) {
+                    byte b = readBuffer[i];
+                    if (skipLineFeed) {
+                        skipLineFeed = false;
+                        if (b == '\n') continue; // second half of CRLF
+                    }
+                    
+                    if (state == QUOTED) {
+                        if (b == '"') {
+                            state = QUOTE_IN_QUOTED;
+                        } else {
+                            row.append(b);
+                        }
+                        continue;
+                    }
+                    if (state == QUOTE_IN_QUOTED) {
+                        if (b == '"') {
+                            row.append(b); // escaped quote
+                            state = QUOTED;
+                            continue;
+                        }
+                        // Closing quote; anything other than a delimiter is kept leniently
+                        state = UNQUOTED;
+                    }
+                    
+                    if (b == ',') {
+                        row.endField();
+                        state = FIELD_START;
+                    } else if (b == '\n' || b == '\r') {
+                        skipLineFeed = b == '\r';
+                        if (finishRow(handler, headerPending)) {
+                            if (headerPending) headerPending = false; else rows++;
+                        }
+                        state = FIELD_START;
+                    } else if (b == '"' && state == FIELD_START) {
+                        state = QUOTED;
+                    } else {
+                        row.append(b);
+                        state = UNQUOTED;
+                    }
+                }
+            }
+        }
+        
+        // Last row without a line terminator
+        if (state != FIELD_START || row.fieldCount > 0 || row.length > 0) {
+            if (finishRow(handler, headerPending) && !headerPending) {
+                rows++;
+            }
+        }
+        
+        return rows;
+    }
+    
+    // Splits a file into ranges of roughly chunkSize bytes that each start right
+    // after a line feed, for parsing in parallel. Returns the range boundaries,
+    // starting with 0 and ending with the file size. Boundaries are found by
+    // looking for the next line feed only, so a quoted field containing a line
+    // break may be split if it happens to straddle a boundary.
+    public static long[] splitAtLines(Path path, long chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            ByteBuffer probe = ByteBuffer.allocate(4096);
+            long position = chunkSize;
+            while (position < size) {
+                long boundary = nextLineStart(channel, position, probe);
+                if (boundary < 0 || boundary >= size) {
+                    break;
+                }
+                bounds.add(boundary);
+                position = boundary + chunkSize;
+            }
+            bounds.add(size);
+            
+            long[] result = new long[bounds.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = bounds.get(i);
+            }
+            return result;
+        }
+    }
+    
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        while (true) {
+            probe.clear();
+            int count = channel.read(probe, position);
+            if (count <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < count; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += count;
+        }
+    }
+    
+    // Returns false for blank lines, which are skipped
+    private boolean finishRow(RowHandler handler, boolean isHeader) {
+        row.endField();
+        boolean blank = row.fieldCount == 1 && row.length == 0;
+        if (!blank && !isHeader) {
+            handler.onRow(row);
+        }
+        row.reset();
+        return !blank;
+    }
+    
+    // Quotes a value for writing if it contains a delimiter, quote or line break
+    public static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return "\"" + value.replace("\"", "\"\"") + "\"";
+            }
+        }
+        return value;
+    }
+    
+    // One parsed record. Field bytes are stored unquoted, back to back, in a
+    // buffer that grows as needed and is reused for the next record.
+    public static final class Row {
+        private byte[] data = new byte[256];
+        private int length;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int fieldCount;
+        private int fieldStart;
+        
+        public int size() {
+            return fieldCount;
+        }
+        
+        public String get(int index) {
+            checkIndex(index);
+            return new String(data, starts[index], ends[index] - starts[index], StandardCharsets.UTF_8);
+        }
+        
+        public boolean isEmpty(int index) {
+            checkIndex(index);
+            return starts[index] == ends[index];
+        }
+        
+        // Parses an optionally signed decimal integer without creating a String
+        public int getInt(int index) {
+            checkIndex(index);
+            int pos = starts[index];
+            int end = ends[index];
+            boolean negative = pos < end && data[pos] == '-';
+            if (negative) pos++;
+            if (pos == end) {
+                throw new NumberFormatException("Empty number in column " + index);
+            }
+            int value = 0;
+            for (; pos < end; pos++) {
+                int digit = data[pos] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("For input string: \"" + get(index) + "\"");
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+        
+        // Parses an ISO yyyy-MM-dd date from the raw bytes, falling back to LocalDate.parse
+        public LocalDate getDate(int index) {
+            checkIndex(index);
+            int pos = starts[index];
+            if (ends[index] - pos == 10 && data[pos + 4] == '-' && data[pos + 7] == '-') {
+                int year = digits(pos, 4);
+                int month = digits(pos + 5, 2);
+                int day = digits(pos + 8, 2);
+                if (year >= 0 && month >= 0 && day >= 0) {
+                    return LocalDate.of(year, month, day);
+                }
+            }
+            return LocalDate.parse(get(index));
+        }
+        
+        private int digits(int pos, int count) {
+            int value = 0;
+            for (int i = pos; i < pos + count; i++) {
+                int digit = data[i] - '0';
+                if (digit < 0 || digit > 9) return -1;
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+        
+        private void checkIndex(int index) {
+            if (index < 0 || index >= fieldCount) {
+                throw new IndexOutOfBoundsException("Column " + index + " of " + fieldCount);
+            }
+        }
+        
+        void append(byte b) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length * 2);
+            }
+            data[length++] = b;
+        }
+        
+        void endField() {
+            if (fieldCount == starts.length) {
+                starts = Arrays.copyOf(starts, fieldCount * 2);
+                ends = Arrays.copyOf(ends, fieldCount * 2);
+            }
+            starts[fieldCount] = fieldStart;
+            ends[fieldCount] = length;
+            fieldCount++;
+            fieldStart = length;
+        }
+        
+        void reset() {
+            length = 0;
+            fieldCount = 0;
+            fieldStart = 0;
+        }
+    }
+}
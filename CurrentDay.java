@@ -0,0 +1,31 @@
+// CurrentDay.java - Today's date as an epoch day, cached until the next local midnight
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+public final class CurrentDay {
+    private static volatile int epochDay;
+    private static volatile long nextMidnightMillis; // 0 until first use
+    
+    private CurrentDay() {
+    }
+    
+    // One clock read and one comparison on the hot path; LocalDate is only
+    // consulted again once the cached day has ended
+    public static int get() {
+        if (System.currentTimeMillis() >= nextMidnightMillis) {
+            refresh();
+        }
+        return epochDay;
+    }
+    
+    private static synchronized void refresh() {
+        if (System.currentTimeMillis() < nextMidnightMillis) {
+            return; // another thread already rolled over
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate today = LocalDate.now(zone);
+        // Publish the day before the deadline so readers that see the new deadline see the new day
+        epochDay = (int) today.toEpochDay();
+        nextMidnightMillis = today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+}
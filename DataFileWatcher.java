@@ -0,0 +1,183 @@
+// DataFileWatcher.java - Reports data files changed on disk, and where their new rows start
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// One daemon thread waits on a WatchService for the directory holding the
+// watched files. Appends modify a file in place, while AtomicFiles and most
+// editors rename a new file over the old one, so both modify and create events
+// count. Events are gathered for a short settle period, so a burst of writes
+// becomes one change. For every changed file the handler gets the byte range
+// to parse: when the file is the same one as before, has grown, and still
+// holds the bytes that used to end it, only the appended lines are new;
+// otherwise the whole file is. A last line without its line break is left for
+// the next change, since the writer may still be writing it.
+public class DataFileWatcher implements Closeable {
+    private static final long SETTLE_MILLIS = 200;
+    private static final int TAIL_BYTES = 64; // compared to tell an append from a rewrite
+    
+    // from is 0 when the whole file must be read again, header included;
+    // otherwise [from, to) holds whole lines appended since the last call
+    public interface ChangeHandler {
+        void fileChanged(String fileName, long from, long to) throws IOException;
+    }
+    
+    private final Path directory;
+    private final Map<String, FileState> files = new LinkedHashMap<>();
+    private final ChangeHandler handler;
+    private final WatchService watchService;
+    private final Thread thread;
+    
+    // What the handler has seen of one file
+    private static final class FileState {
+        final Object fileKey;
+        final long end;    // just past the last complete line
+        final byte[] tail; // the bytes before end
+        
+        FileState(Object fileKey, long end, byte[] tail) {
+            this.fileKey = fileKey;
+            this.end = end;
+            this.tail = tail;
+        }
+    }
+    
+    // The files are names in the current directory, as the data files are
+    // opened. Their present content counts as seen.
+    public DataFileWatcher(ChangeHandler handler, String... fileNames) throws IOException {
+        this.handler = handler;
+        this.directory = Paths.get("").toAbsolutePath();
+        for (String fileName : fileNames) {
+            files.put(fileName, readState(fileName));
+        }
+        watchService = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                               StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        thread = new Thread(this::run, "data-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    private void run() {
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<>();
+                WatchKey key = watchService.take();
+                // Keep collecting until the directory has been quiet for a moment
+                while (key != null) {
+                    collect(key, changed);
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                for (String fileName : files.keySet()) {
+                    if (changed.contains(fileName)) {
+                        check(fileName);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+    
+    private void collect(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.addAll(files.keySet()); // events were lost, so check everything
+            } else {
+                String name = event.context().toString();
+                for (String fileName : files.keySet()) {
+                    // The shipped data files are named *.CSV on case-insensitive systems
+                    if (fileName.equalsIgnoreCase(name)) {
+                        changed.add(fileName);
+                    }
+                }
+            }
+        }
+        key.reset();
+    }
+    
+    private void check(String fileName) {
+        try {
+            FileState before = files.get(fileName);
+            FileState after = readState(fileName);
+            if (after.end == before.end && Objects.equals(after.fileKey, before.fileKey)
+                    && Arrays.equals(after.tail, before.tail)) {
+                return; // e.g. only an unfinished line was added
+            }
+            long from = isAppend(fileName, before, after) ? before.end : 0;
+            handler.fileChanged(fileName, from, after.end);
+            files.put(fileName, after);
+        } catch (NoSuchFileException e) {
+            // Between a delete and the replacement showing up; the create event follows
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reloading " + fileName + ": " + e.getMessage());
+        }
+    }
+    
+    private boolean isAppend(String fileName, FileState before, FileState after) throws IOException {
+        if (before.fileKey == null || !before.fileKey.equals(after.fileKey) || after.end <= before.end) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            return Arrays.equals(before.tail, readTail(channel, before.end));
+        }
+    }
+    
+    private static FileState readState(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        Object fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = lineEnd(channel);
+            return new FileState(fileKey, end, readTail(channel, end));
+        }
+    }
+    
+    // Position just past the last line feed, or 0 if there is none
+    private static long lineEnd(FileChannel channel) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - probe.capacity());
+            probe.clear().limit((int) (end - start));
+            while (probe.hasRemaining() && channel.read(probe, start + probe.position()) >= 0) {
+                // keep reading
+            }
+            for (int i = probe.position() - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+    
+    private static byte[] readTail(FileChannel channel, long end) throws IOException {
+        ByteBuffer tail = ByteBuffer.allocate((int) Math.min(TAIL_BYTES, end));
+        long start = end - tail.capacity();
+        while (tail.hasRemaining() && channel.read(tail, start + tail.position()) >= 0) {
+            // keep reading
+        }
+        return tail.array();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,235 @@
+// DataGenerator.java - Writes synthetic students, subjects and registrations CSV files
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Arrays;
+import java.util.Random;
+
+// Produces a consistent data set in the same format as the real files: every
+// registration refers to an existing student and subject, no pair repeats,
+// and each subject's currentEnrollment matches its registrations. Every
+// registration also passes the rules registering applies: the student is old
+// enough on the reference date, and is registered for the subject's
+// prerequisite too. Subject popularity is Zipf-distributed, birth dates
+// cluster around the minimum age so both sides of the age rule occur (students
+// under it have no registrations), and prerequisites form chains up to four
+// subjects deep. The same seed and reference date give the same files.
+//
+// Usage: java DataGenerator <dir> <registrations> [students] [subjects] [seed] [zipfExponent] [referenceDate]
+public class DataGenerator {
+    private static final int FIRST_STUDENT_ID = 69_000_000; // IDs must be 8 digits starting with 69
+    private static final int MAX_STUDENTS = 1_000_000;
+    private static final int FIRST_SUBJECT_ID = 5_500_000;   // written as 0550xxxx
+    private static final int DEFAULT_SUBJECTS = 200;
+    private static final long DEFAULT_SEED = 42;
+    private static final double DEFAULT_ZIPF_EXPONENT = 1.0;
+    private static final int MAX_CHAIN_DEPTH = 4;
+    private static final int YOUNGEST_AGE = 14; // birth dates span ages 14 to 18 on the reference date
+    private static final int OLDEST_AGE = 18;
+    private static final int MINIMUM_AGE = 15; // the rule in Student.isAgeValid
+    
+    private static final String[] TITLES = {"Mr.", "Ms.", "Mrs."};
+    private static final String[] FIRST_NAMES = {"John", "Sarah", "Somchai", "Malee", "David", "Emily",
+                                                 "Niran", "Ploy", "Michael", "Anna", "Kittisak", "Suda"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Suksan", "Kengkaj", "Brown", "Wong",
+                                                "Chalard", "Srisuk", "Taylor", "Lee", "Boonmee", "Rattana"};
+    private static final String[] SCHOOLS = {"Bangkok International School", "Triam Udom Suksa School",
+                                             "Chulalongkorn University Demonstration School",
+                                             "Mahidol Wittayanusorn School", "Satit Kaset School"};
+    private static final String[] SUBJECT_WORDS = {"Programming", "Mathematics", "Physics", "Chemistry",
+                                                   "Biology", "Statistics", "Networks", "Databases"};
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java DataGenerator <dir> <registrations> [students] [subjects] [seed]"
+                             + " [zipfExponent] [referenceDate]");
+            return;
+        }
+        Path dir = Paths.get(args[0]);
+        long registrations = parseCount(args[1]);
+        int students = args.length > 2 ? (int) parseCount(args[2]) : (int) Math.min(registrations, MAX_STUDENTS);
+        int subjects = args.length > 3 ? (int) parseCount(args[3]) : DEFAULT_SUBJECTS;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+        double exponent = args.length > 5 ? Double.parseDouble(args[5]) : DEFAULT_ZIPF_EXPONENT;
+        LocalDate referenceDate = args.length > 6 ? LocalDate.parse(args[6]) : LocalDate.now();
+        
+        long start = System.nanoTime();
+        generate(dir, students, subjects, registrations, seed, exponent, referenceDate);
+        System.out.println("Generated " + students + " students, " + subjects + " subjects, " + registrations
+                         + " registrations in " + dir + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+    
+    // Accepts plain numbers or a k/m suffix, e.g. 10k or 1m
+    static long parseCount(String value) {
+        String lower = value.toLowerCase();
+        if (lower.endsWith("k")) {
+            return Long.parseLong(lower.substring(0, lower.length() - 1)) * 1_000;
+        }
+        if (lower.endsWith("m")) {
+            return Long.parseLong(lower.substring(0, lower.length() - 1)) * 1_000_000;
+        }
+        return Long.parseLong(lower);
+    }
+    
+    public static void generate(Path dir, int studentCount, int subjectCount, long registrationCount,
+                                long seed) throws IOException {
+        generate(dir, studentCount, subjectCount, registrationCount, seed, DEFAULT_ZIPF_EXPONENT, LocalDate.now());
+    }
+    
+    public static void generate(Path dir, int studentCount, int subjectCount, long registrationCount,
+                                long seed, double zipfExponent, LocalDate referenceDate) throws IOException {
+        if (studentCount < 1 || studentCount > MAX_STUDENTS) {
+            throw new IllegalArgumentException("Student count must be between 1 and " + MAX_STUDENTS);
+        }
+        Files.createDirectories(dir);
+        Random random = new Random(seed);
+        
+        String[] subjectIds = new String[subjectCount];
+        for (int i = 0; i < subjectCount; i++) {
+            subjectIds[i] = String.format("%08d", FIRST_SUBJECT_ID + i);
+        }
+        
+        ZipfDistribution popularity = new ZipfDistribution(subjectCount, zipfExponent, random);
+        int[] prerequisites = choosePrerequisites(subjectCount, random);
+        
+        boolean[] eligible = writeStudents(dir.resolve(Registration.STUDENTS_CSV), studentCount, referenceDate, random);
+        int eligibleCount = 0;
+        for (boolean studentEligible : eligible) {
+            if (studentEligible) {
+                eligibleCount++;
+            }
+        }
+        if (registrationCount > 0 && eligibleCount == 0) {
+            throw new IllegalArgumentException("No generated student is old enough to register");
+        }
+        long perStudent = eligibleCount == 0 ? 0 : (registrationCount + eligibleCount - 1) / eligibleCount;
+        if (perStudent > subjectCount) {
+            throw new IllegalArgumentException(registrationCount + " registrations need at least " + perStudent
+                                             + " subjects for " + eligibleCount + " students old enough to register");
+        }
+        int[] enrollment = writeRegistrations(dir.resolve("registrations.csv"), eligible, eligibleCount, subjectIds,
+                                              prerequisites, registrationCount, popularity, random);
+        writeSubjects(dir.resolve(Registration.SUBJECTS_CSV), subjectIds, prerequisites, enrollment, random);
+    }
+    
+    // A third of the subjects have a prerequisite with a lower index, so the
+    // graph has no cycles, chosen among subjects whose own chain is still
+    // short. Returns the prerequisite index of each subject, or -1.
+    private static int[] choosePrerequisites(int subjectCount, Random random) {
+        int[] prerequisites = new int[subjectCount];
+        int[] depth = new int[subjectCount]; // length of each subject's prerequisite chain
+        Arrays.fill(prerequisites, -1);
+        for (int i = 1; i < subjectCount; i++) {
+            if (random.nextInt(3) == 0) {
+                int candidate = random.nextInt(i);
+                if (depth[candidate] < MAX_CHAIN_DEPTH - 1) {
+                    prerequisites[i] = candidate;
+                    depth[i] = depth[candidate] + 1;
+                }
+            }
+        }
+        return prerequisites;
+    }
+    
+    // Returns which students are old enough to register on the reference date
+    private static boolean[] writeStudents(Path file, int count, LocalDate referenceDate,
+                                           Random random) throws IOException {
+        LocalDate earliest = referenceDate.minusYears(OLDEST_AGE);
+        int birthRange = (int) (referenceDate.minusYears(YOUNGEST_AGE).toEpochDay() - earliest.toEpochDay());
+        boolean[] eligible = new boolean[count];
+        try (Writer out = newWriter(file)) {
+            out.write("studentId,title,firstName,lastName,birthDate,currentSchool,email\n");
+            StringBuilder line = new StringBuilder(160);
+            for (int i = 0; i < count; i++) {
+                String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                LocalDate birthDate = earliest.plusDays(random.nextInt(birthRange));
+                eligible[i] = Period.between(birthDate, referenceDate).getYears() >= MINIMUM_AGE;
+                line.setLength(0);
+                line.append(FIRST_STUDENT_ID + i).append(',')
+                    .append(TITLES[random.nextInt(TITLES.length)]).append(',')
+                    .append(firstName).append(',')
+                    .append(lastName).append(',')
+                    .append(birthDate).append(',')
+                    .append(SCHOOLS[random.nextInt(SCHOOLS.length)]).append(',')
+                    .append(firstName.toLowerCase()).append('.').append(lastName.toLowerCase())
+                    .append(i).append("@email.com\n");
+                out.append(line);
+            }
+        }
+        return eligible;
+    }
+    
+    // Spreads the registrations evenly over the students old enough to
+    // register, each with distinct subjects drawn by popularity. A subject
+    // whose prerequisite the student does not have yet is replaced by the
+    // first missing subject down its chain, so the prerequisite comes first.
+    // Returns the enrollment count per subject.
+    private static int[] writeRegistrations(Path file, boolean[] eligible, int eligibleCount, String[] subjectIds,
+                                            int[] prerequisites, long count, ZipfDistribution popularity,
+                                            Random random) throws IOException {
+        int subjectCount = subjectIds.length;
+        int[] enrollment = new int[subjectCount];
+        int[] chosenBy = new int[subjectCount]; // last student (index + 1) that chose each subject
+        long base = eligibleCount == 0 ? 0 : count / eligibleCount;
+        long extra = eligibleCount == 0 ? 0 : count % eligibleCount;
+        try (Writer out = newWriter(file)) {
+            out.write("studentId,subjectId\n");
+            StringBuilder line = new StringBuilder(32);
+            int rank = 0; // position among the eligible students
+            for (int i = 0; i < eligible.length; i++) {
+                if (!eligible[i]) {
+                    continue;
+                }
+                long picks = base + (rank++ < extra ? 1 : 0);
+                for (long p = 0; p < picks; p++) {
+                    int subject = popularity.next(random);
+                    for (int attempt = 0; chosenBy[subject] == i + 1; attempt++) {
+                        // Redraw; after many repeats take the next free subject so
+                        // steep distributions cannot stall
+                        subject = attempt < 64 ? popularity.next(random) : (subject + 1) % subjectCount;
+                    }
+                    while (prerequisites[subject] >= 0 && chosenBy[prerequisites[subject]] != i + 1) {
+                        subject = prerequisites[subject];
+                    }
+                    chosenBy[subject] = i + 1;
+                    enrollment[subject]++;
+                    
+                    line.setLength(0);
+                    line.append(FIRST_STUDENT_ID + i).append(',').append(subjectIds[subject]).append('\n');
+                    out.append(line);
+                }
+            }
+        }
+        return enrollment;
+    }
+    
+    // A quarter of the subjects are unlimited and a tenth are exactly full
+    private static void writeSubjects(Path file, String[] subjectIds, int[] prerequisites, int[] enrollment,
+                                      Random random) throws IOException {
+        try (Writer out = newWriter(file)) {
+            out.write("subjectId,subjectName,credits,instructor,prerequisiteSubjectId,maxCapacity,currentEnrollment\n");
+            for (int i = 0; i < enrollment.length; i++) {
+                int kind = random.nextInt(20);
+                int maxCapacity;
+                if (kind < 5) {
+                    maxCapacity = -1;
+                } else if (kind < 7) {
+                    maxCapacity = enrollment[i];
+                } else {
+                    maxCapacity = enrollment[i] + 1 + random.nextInt(enrollment[i] / 10 + 10);
+                }
+                String prerequisite = prerequisites[i] < 0 ? "" : subjectIds[prerequisites[i]];
+                out.write(subjectIds[i] + "," + SUBJECT_WORDS[i % SUBJECT_WORDS.length] + " " + (i + 1) + ","
+                        + (1 + random.nextInt(3)) + ",Mr. " + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + ","
+                        + prerequisite + "," + maxCapacity + "," + enrollment[i] + "\n");
+            }
+        }
+    }
+    
+    private static Writer newWriter(Path file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 20);
+    }
+}
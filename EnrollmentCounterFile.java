@@ -0,0 +1,283 @@
+// EnrollmentCounterFile.java - Memory-mapped, fixed-width enrollment count per subject
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+// Layout (big-endian):
+//   int magic "RENC", int version, int slot count, int reserved
+//   one 32-byte slot per subject, in the order subjects were first added:
+//     int current enrollment, int id length, subject id in UTF-8, zero padded
+// Changing a count is a single aligned 4-byte compare-and-swap in the
+// mapping, so registering no longer touches subjects.csv at all. Every
+// process working on the same data directory maps the same pages, so the
+// compare-and-swap also arbitrates seats between processes. Slots are found
+// by subject id, and each process keeps its own ordinal-to-slot table, so
+// processes whose catalogues list the subjects in different orders (say one
+// reloaded new subjects and another started fresh) share the same counters.
+// Slots are only ever appended, under the file lock, and the file is never
+// truncated, so a mapping another process holds always stays valid.
+public class EnrollmentCounterFile implements EnrollmentCounters, Closeable {
+    private static final int MAGIC = 0x52454E43; // "RENC"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_COUNT_OFFSET = 8;
+    private static final int SLOT_BYTES = 32;
+    private static final int ID_OFFSET = 8;    // within a slot; the count is at 0
+    private static final int MAX_ID_BYTES = SLOT_BYTES - ID_OFFSET;
+    private static final VarHandle INT =
+        MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    
+    private final FileChannel channel;
+    private final boolean forceEachUpdate;
+    // Both are replaced when the catalogue grows. The buffer is written
+    // before slotOf, so readers that read slotOf first see a buffer that
+    // covers every slot in it.
+    private volatile MappedByteBuffer buffer;
+    private volatile int[] slotOf; // catalogue ordinal -> slot in the file
+    
+    private EnrollmentCounterFile(FileChannel channel, MappedByteBuffer buffer, int[] slotOf,
+                                  boolean forceEachUpdate) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.slotOf = slotOf;
+        this.forceEachUpdate = forceEachUpdate;
+    }
+    
+    // Opens or creates the file for the catalogue, with initialCount giving
+    // the count of each ordinal as loaded and replayed from the journal. Under
+    // the file lock, subjects the file lacks get new slots, and stored counts
+    // lower than the replayed ones are raised to them: the journal is the
+    // durable record, and a seat given back is never taken back from a count.
+    // forceEachUpdate flushes every update to disk; without it counts reach
+    // the disk when the OS writes the page back or force() is called.
+    public static EnrollmentCounterFile open(Path file, List<Subject> catalogue, IntUnaryOperator initialCount,
+                                             boolean forceEachUpdate) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                               StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.lock();
+            try {
+                Map<String, Integer> stored = readSlots(channel, true);
+                int[] slotOf = new int[catalogue.size()];
+                MappedByteBuffer buffer = assignSlots(channel, catalogue, initialCount, 0, slotOf, stored);
+                return new EnrollmentCounterFile(channel, buffer, slotOf, forceEachUpdate);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+    
+    // Finds or appends the slots of the subjects appended to the catalogue.
+    // Another process may have added some of them already, with its own count.
+    @Override
+    public synchronized void extend(List<Subject> catalogue, IntUnaryOperator initialCount) throws IOException {
+        int[] current = slotOf;
+        if (catalogue.size() <= current.length) {
+            return;
+        }
+        FileLock lock = channel.lock();
+        try {
+            int[] extended = Arrays.copyOf(current, catalogue.size());
+            buffer = assignSlots(channel, catalogue, initialCount, current.length, extended,
+                                 readSlots(channel, false));
+            slotOf = extended;
+        } finally {
+            lock.release();
+        }
+    }
+    
+    // Fills slotOf from the given ordinal on, appending slots for subjects
+    // not stored yet, then maps the whole file and raises each count to at
+    // least its initial count. Must hold the file lock.
+    private static MappedByteBuffer assignSlots(FileChannel channel, List<Subject> catalogue,
+                                                IntUnaryOperator initialCount, int from, int[] slotOf,
+                                                Map<String, Integer> stored) throws IOException {
+        int storedCount = stored.size();
+        int slotCount = storedCount;
+        List<Integer> added = new ArrayList<>();
+        for (int ordinal = from; ordinal < catalogue.size(); ordinal++) {
+            String subjectId = catalogue.get(ordinal).getSubjectId();
+            Integer slot = stored.get(subjectId);
+            if (slot == null) {
+                slot = slotCount++;
+                stored.put(subjectId, slot);
+                added.add(ordinal);
+            }
+            slotOf[ordinal] = slot;
+        }
+        if (!added.isEmpty()) {
+            appendSlots(channel, catalogue, initialCount, added, storedCount);
+        }
+        
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotOffset(slotCount));
+        for (int ordinal = from; ordinal < catalogue.size(); ordinal++) {
+            raise(buffer, slotOffset(slotOf[ordinal]), initialCount.applyAsInt(ordinal));
+        }
+        return buffer;
+    }
+    
+    // Other processes may be changing the count, so only a compare-and-swap
+    // may raise it
+    private static void raise(MappedByteBuffer buffer, int offset, int count) {
+        int current;
+        do {
+            current = (int) INT.getVolatile(buffer, offset);
+            if (current >= count) {
+                return;
+            }
+        } while (!INT.compareAndSet(buffer, offset, current, count));
+    }
+    
+    // Slots of the given ordinals, written from slot index first on past the
+    // current end, then the new slot count, so mappings of the shorter file
+    // stay valid
+    private static void appendSlots(FileChannel channel, List<Subject> catalogue, IntUnaryOperator initialCount,
+                                    List<Integer> ordinals, int first) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(ordinals.size() * SLOT_BYTES);
+        for (int ordinal : ordinals) {
+            String subjectId = catalogue.get(ordinal).getSubjectId();
+            byte[] id = subjectId.getBytes(StandardCharsets.UTF_8);
+            if (id.length > MAX_ID_BYTES) {
+                throw new IOException("Subject id " + subjectId + " is longer than the " + MAX_ID_BYTES
+                                    + " bytes the enrollment counter file holds");
+            }
+            int start = data.position();
+            data.putInt(initialCount.applyAsInt(ordinal));
+            data.putInt(id.length);
+            data.put(id);
+            data.position(start + SLOT_BYTES);
+        }
+        data.flip();
+        write(channel, data, slotOffset(first));
+        channel.force(true);
+        write(channel, ByteBuffer.allocate(4).putInt(0, first + ordinals.size()), SLOT_COUNT_OFFSET);
+        channel.force(true);
+    }
+    
+    // Slot index of every stored subject id. A file that is empty or not in
+    // this format is started over when repair is set, by writing a new header
+    // over it in place: truncating it could fault another process's mapping.
+    private static Map<String, Integer> readSlots(FileChannel channel, boolean repair) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, 0);
+        if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+            if (!repair) {
+                throw new IOException("Enrollment counter file was replaced by one in another format");
+            }
+            if (channel.size() > 0) {
+                System.err.println("Starting a new enrollment counter file over one in another format");
+            }
+            ByteBuffer fresh = ByteBuffer.allocate(HEADER_BYTES).putInt(0, MAGIC).putInt(4, FORMAT_VERSION);
+            write(channel, fresh, 0);
+            channel.force(true);
+            return new HashMap<>();
+        }
+        
+        // Slots are written before the count, so the count never runs past them
+        int slotCount = header.getInt(SLOT_COUNT_OFFSET);
+        if (slotCount < 0 || slotOffset(slotCount) > channel.size()) {
+            throw new IOException("Enrollment counter file is damaged: " + slotCount + " slots do not fit");
+        }
+        ByteBuffer data = ByteBuffer.allocate(slotCount * SLOT_BYTES);
+        readFully(channel, data, HEADER_BYTES);
+        Map<String, Integer> slots = new HashMap<>(slotCount * 2);
+        for (int slot = 0; slot < slotCount; slot++) {
+            int start = slot * SLOT_BYTES;
+            int length = data.getInt(start + 4);
+            if (length < 0 || length > MAX_ID_BYTES) {
+                throw new IOException("Enrollment counter file is damaged at slot " + slot);
+            }
+            String subjectId = new String(data.array(), start + ID_OFFSET, length, StandardCharsets.UTF_8);
+            slots.putIfAbsent(subjectId, slot);
+        }
+        return slots;
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining() && channel.read(data, position + data.position()) >= 0) {
+            // keep reading
+        }
+    }
+    
+    private static void write(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data, position + data.position());
+        }
+    }
+    
+    private static int slotOffset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+    
+    @Override
+    public int get(int ordinal) {
+        int offset = countOffset(ordinal);
+        return (int) INT.getVolatile(buffer, offset);
+    }
+    
+    @Override
+    public int tryIncrement(int ordinal, int maxCapacity) {
+        int offset = countOffset(ordinal);
+        MappedByteBuffer mapped = buffer;
+        int current;
+        do {
+            current = (int) INT.getVolatile(mapped, offset);
+            if (maxCapacity != -1 && current >= maxCapacity) {
+                return -1;
+            }
+        } while (!INT.compareAndSet(mapped, offset, current, current + 1));
+        forceIfRequested(mapped, offset);
+        return current + 1;
+    }
+    
+    @Override
+    public void decrement(int ordinal) {
+        int offset = countOffset(ordinal);
+        MappedByteBuffer mapped = buffer;
+        INT.getAndAdd(mapped, offset, -1);
+        forceIfRequested(mapped, offset);
+    }
+    
+    // Reads slotOf, so must come before reading buffer
+    private int countOffset(int ordinal) {
+        int[] slots = slotOf;
+        if (ordinal < 0 || ordinal >= slots.length) {
+            throw new IndexOutOfBoundsException("No counter for subject ordinal " + ordinal);
+        }
+        return slotOffset(slots[ordinal]);
+    }
+    
+    private void forceIfRequested(MappedByteBuffer mapped, int offset) {
+        if (forceEachUpdate) {
+            mapped.force(offset, 4);
+        }
+    }
+    
+    @Override
+    public void force() {
+        buffer.force();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
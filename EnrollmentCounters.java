@@ -0,0 +1,26 @@
+// EnrollmentCounters.java - Current enrollment of every subject, by catalogue ordinal
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+// Enrollment is the only subject data that changes while registering, so it is
+// kept apart from the immutable catalogue, one atomic counter per ordinal.
+// Implementations must be safe for any number of threads without locking.
+public interface EnrollmentCounters {
+    int get(int ordinal);
+    
+    // Takes one seat unless the subject is full (maxCapacity -1 for no limit).
+    // Returns the new count, or -1 if no seat was left.
+    int tryIncrement(int ordinal, int maxCapacity);
+    
+    // Gives back a seat taken by tryIncrement when the registration is rolled back
+    void decrement(int ordinal);
+    
+    // Adds counters for the subjects appended to the end of the catalogue,
+    // starting from initialCount of their ordinal. A shared counter another
+    // process already holds for the subject keeps its count if that is higher.
+    void extend(List<Subject> catalogue, IntUnaryOperator initialCount) throws IOException;
+    
+    // Makes the counts durable, where they are kept on disk at all
+    void force();
+}
@@ -0,0 +1,17 @@
+// LoginStatus.java - Outcome of checking a student ID at login
+public enum LoginStatus {
+    OK("Login successful"),                                                  // may log in
+    INVALID_ID("Invalid student ID (must be 8 digits starting with 69)"),   // malformed ID
+    UNKNOWN_STUDENT("Student ID not found in system"),                      // ID not in the system
+    UNDERAGE("Age requirement not met (must be at least 15 years old)");    // student is younger than 15
+    
+    private final String message;
+    
+    LoginStatus(String message) {
+        this.message = message;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+}
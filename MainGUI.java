@@ -1,10 +1,56 @@
 // MainGUI.java - Alternative main class to replace console Main.java
-import javax.swing.SwingUtilities;
+import javax.swing.*;
+import java.awt.BorderLayout;
+import java.util.List;
 
 public class MainGUI {
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            new RegistrationGUI().setVisible(true);
-        });
+        SwingUtilities.invokeLater(MainGUI::loadAndShow);
     }
-}
\ No newline at end of file
+    
+    // Shows a progress window while the data files load in the background, then
+    // opens the main window with the loaded model
+    private static void loadAndShow() {
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        
+        JFrame loadingFrame = new JFrame("Course Registration System");
+        loadingFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        JPanel panel = new JPanel(new BorderLayout(0, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+        panel.add(new JLabel("Loading student and subject data..."), BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        loadingFrame.add(panel);
+        loadingFrame.setSize(400, 120);
+        loadingFrame.setLocationRelativeTo(null);
+        loadingFrame.setVisible(true);
+        
+        new SwingWorker<Registration, Integer>() {
+            @Override
+            protected Registration doInBackground() {
+                // One shared model for the whole application; screens and controllers
+                // receive it instead of loading the CSV files again
+                return new Registration(this::publish);
+            }
+            
+            @Override
+            protected void process(List<Integer> percentages) {
+                progressBar.setValue(percentages.get(percentages.size() - 1));
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    Registration registration = get();
+                    loadingFrame.dispose();
+                    new RegistrationGUI(registration).setVisible(true);
+                } catch (Exception e) {
+                    loadingFrame.dispose();
+                    JOptionPane.showMessageDialog(null, "Error loading data: " + e.getMessage(),
+                                                  "Error", JOptionPane.ERROR_MESSAGE);
+                    System.exit(1);
+                }
+            }
+        }.execute();
+    }
+}
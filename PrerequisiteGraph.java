@@ -0,0 +1,137 @@
+// PrerequisiteGraph.java - Subject dependency graph resolved to catalogue ordinals
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+// Built once per catalogue version. Each subject gets an ordinal (its position
+// in catalogue order) and the ordinal of its direct prerequisite, so checking
+// a chain follows ints instead of looking up prerequisite IDs one subject at a
+// time. A subject has at most one prerequisite, so its chain is a path and a
+// check costs the chain's depth. Nothing per subject grows with the size of
+// the catalogue, which matters since every reload builds a new graph.
+public class PrerequisiteGraph {
+    // DFS colouring for cycle detection
+    private static final int UNVISITED = 0;
+    private static final int IN_PROGRESS = 1;
+    private static final int DONE = 2;
+    
+    private final Map<String, Integer> ordinals;
+    private final String[] subjectIds;  // by ordinal
+    private final int[] prerequisite;   // ordinal of the direct prerequisite, or -1
+    private final BitSet cyclic;        // subjects whose chain leads back to themselves
+    
+    public PrerequisiteGraph(Collection<Subject> subjects) {
+        int count = subjects.size();
+        ordinals = new HashMap<>(count * 2);
+        subjectIds = new String[count];
+        List<Subject> byOrdinal = new ArrayList<>(subjects);
+        for (int i = 0; i < count; i++) {
+            subjectIds[i] = byOrdinal.get(i).getSubjectId();
+            ordinals.put(subjectIds[i], i);
+        }
+        
+        prerequisite = new int[count];
+        for (int i = 0; i < count; i++) {
+            Subject subject = byOrdinal.get(i);
+            prerequisite[i] = -1;
+            if (subject.hasPrerequisite()) {
+                Integer target = ordinals.get(subject.getPrerequisiteSubjectId());
+                if (target == null) {
+                    System.err.println("Ignoring unknown prerequisite " + subject.getPrerequisiteSubjectId() +
+                                     " of subject " + subject.getSubjectId());
+                } else {
+                    prerequisite[i] = target;
+                }
+            }
+        }
+        
+        cyclic = new BitSet(count);
+        int[] state = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (state[i] == UNVISITED) {
+                markCycle(i, state);
+            }
+        }
+        
+        if (!cyclic.isEmpty()) {
+            StringBuilder ids = new StringBuilder();
+            for (int i = cyclic.nextSetBit(0); i >= 0; i = cyclic.nextSetBit(i + 1)) {
+                ids.append(ids.length() == 0 ? "" : ", ").append(subjectIds[i]);
+            }
+            System.err.println("Prerequisite cycle found; these subjects cannot be registered: " + ids);
+        }
+    }
+    
+    // Follows the prerequisite chain from start iteratively; if the path runs
+    // into itself, every subject from that point on is on a cycle
+    private void markCycle(int start, int[] state) {
+        List<Integer> path = new ArrayList<>();
+        int current = start;
+        while (current >= 0 && state[current] == UNVISITED) {
+            state[current] = IN_PROGRESS;
+            path.add(current);
+            current = prerequisite[current];
+        }
+        if (current >= 0 && state[current] == IN_PROGRESS) {
+            for (int i = path.indexOf(current); i < path.size(); i++) {
+                cyclic.set(path.get(i));
+            }
+        }
+        for (int subject : path) {
+            state[subject] = DONE;
+        }
+    }
+    
+    // Catalogue position of a subject, or -1 if it is not in the catalogue
+    public int ordinalOf(String subjectId) {
+        Integer ordinal = ordinals.get(subjectId);
+        return ordinal == null ? -1 : ordinal;
+    }
+    
+    // Converts a student's registered subject IDs to a bitset of ordinals, for
+    // checking many subjects against the same registrations
+    public BitSet toBitSet(Collection<String> subjectIds) {
+        BitSet bits = new BitSet(prerequisite.length);
+        for (String subjectId : subjectIds) {
+            Integer ordinal = ordinals.get(subjectId);
+            if (ordinal != null) {
+                bits.set(ordinal);
+            }
+        }
+        return bits;
+    }
+    
+    // True if every subject in the chain of the given subject is in completed
+    public boolean isSatisfied(int ordinal, BitSet completed) {
+        return chainMatches(ordinal, completed::get);
+    }
+    
+    // Subjects outside the catalogue have no known prerequisites. A student has
+    // only a few registered subjects, so they are searched as they are.
+    public boolean isSatisfied(String subjectId, Collection<String> completedSubjectIds) {
+        int ordinal = ordinalOf(subjectId);
+        if (ordinal < 0 || prerequisite[ordinal] < 0) {
+            return true;
+        }
+        return chainMatches(ordinal, p -> completedSubjectIds.contains(subjectIds[p]));
+    }
+    
+    // Walks the chain above ordinal once. A chain that runs into a cycle
+    // covers the whole cycle, which includes ordinal itself when it is on it.
+    private boolean chainMatches(int ordinal, IntPredicate completed) {
+        int cycleEntry = -1;
+        for (int p = prerequisite[ordinal]; p >= 0 && p != cycleEntry; p = prerequisite[p]) {
+            if (!completed.test(p)) {
+                return false;
+            }
+            if (cycleEntry < 0 && cyclic.get(p)) {
+                cycleEntry = p;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+// RegisteredSubjectsTableModel.java - Live table of the subjects a student is registered for
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.table.AbstractTableModel;
+
+// Loaded once per student; each new registration of that student appends one
+// row instead of rebuilding the table. Must only be used on the event
+// dispatch thread.
+public class RegisteredSubjectsTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Subject ID", "Subject Name", "Credits", "Instructor"};
+    
+    private final Registration registration;
+    private String studentId;
+    private final List<Subject> rows = new ArrayList<>();
+    private int totalCredits;
+    
+    public RegisteredSubjectsTableModel(Registration registration) {
+        this.registration = registration;
+    }
+    
+    public String getStudentId() {
+        return studentId;
+    }
+    
+    public int getTotalCredits() {
+        return totalCredits;
+    }
+    
+    // Rebuilds every row for the given student, or clears the table for null
+    public void load(String studentId) {
+        this.studentId = studentId;
+        rows.clear();
+        totalCredits = 0;
+        if (studentId != null) {
+            for (Subject subject : registration.getRegisteredSubjects(studentId)) {
+                rows.add(subject);
+                totalCredits += subject.getCredits();
+            }
+        }
+        fireTableDataChanged();
+    }
+    
+    public void registrationAdded(String registeredStudentId, String subjectId) {
+        if (studentId == null || !studentId.equals(registeredStudentId)) {
+            return;
+        }
+        Subject subject = registration.getSubject(subjectId);
+        if (subject == null || rows.contains(subject)) {
+            return;
+        }
+        rows.add(subject);
+        totalCredits += subject.getCredits();
+        fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+    }
+    
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        Subject subject = rows.get(row);
+        switch (column) {
+            case 0: return subject.getSubjectId();
+            case 1: return subject.getSubjectName();
+            case 2: return subject.getCredits();
+            default: return subject.getInstructor();
+        }
+    }
+}
@@ -1,189 +1,1117 @@
 // Registration.java - Model for handling registration logic
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.*;
 import java.util.*;
-import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class Registration {
-    private static final String STUDENTS_CSV = "students.csv";
-    private static final String SUBJECTS_CSV = "subjects.csv";
+    static final String STUDENTS_CSV = "students.csv";
+    static final String SUBJECTS_CSV = "subjects.csv";
     private static final String REGISTRATIONS_CSV = "registrations.csv";
+    private static final String JOURNAL_FILE = "registrations.journal";
+    private static final String SNAPSHOT_FILE = "registrations.snapshot";
+    private static final String ENROLLMENT_FILE = "subjects.enrollment";
+    private static final String MAINTENANCE_LOCK_FILE = "registrations.lock";
     
-    private Map<String, Student> students;
-    private Map<String, Subject> subjects;
-    private Set<String> registeredCombinations; // studentId_subjectId
+    // How long the journal writer waits for concurrent registrations to share one
+    // flush; override with -Dregistration.commitWindowMicros=<micros>
+    private static final long COMMIT_WINDOW_MICROS = Long.getLong("registration.commitWindowMicros", 2000);
+    // -Dregistration.fsync=false skips forcing journal writes to disk; only for
+    // benchmarks, since acknowledged registrations can then be lost on power failure
+    private static final boolean JOURNAL_FSYNC = Boolean.parseBoolean(System.getProperty("registration.fsync", "true"));
+    // -Dregistration.forceEnrollment=true flushes the enrollment counter file on
+    // every registration; off by default since the journal already makes each
+    // registration durable and compaction flushes the counters
+    private static final boolean ENROLLMENT_FORCE = Boolean.getBoolean("registration.forceEnrollment");
+    // How often an idle process picks up registrations made by other processes
+    // sharing the data directory; override with -Dregistration.refreshMillis=<ms>, 0 disables
+    private static final long REFRESH_MILLIS = Long.getLong("registration.refreshMillis", 1000);
+    // Reload students.csv and subjects.csv when they change on disk; off for
+    // tools that only read the data once
+    private static final boolean WATCH_FILES =
+        Boolean.parseBoolean(System.getProperty("registration.watchFiles", "true"));
+    // Prints the metrics report every n seconds when set, e.g. -Dregistration.metricsDumpSeconds=60
+    private static final long METRICS_DUMP_SECONDS = Long.getLong("registration.metricsDumpSeconds", 0);
+    private static final String SUBJECTS_HEADER =
+        "subjectId,subjectName,credits,instructor,prerequisiteSubjectId,maxCapacity,currentEnrollment";
+    private static final String REGISTRATIONS_HEADER = "studentId,subjectId";
+    private static final int STUDENT_FIELDS = 7;
+    private static final int SUBJECT_FIELDS = 7;
+    private static final int REGISTRATION_FIELDS = 2;
     
+    // Files larger than this are split into chunks that are parsed in parallel
+    private static final long LOAD_CHUNK_BYTES = 4L * 1024 * 1024;
+    
+    // Compact the journal into the CSV snapshots once it grows past this size
+    private static final long COMPACTION_THRESHOLD_BYTES = 4L * 1024 * 1024;
+    private static final long COMPACTION_CHECK_SECONDS = 30;
+    
+    // The student map and the subject catalogue are never changed once
+    // published: a reload builds new ones and swaps them in, so readers need no
+    // locks. Registering only changes the registration set, its indexes and
+    // the enrollment counters, which grow before a catalogue with new subjects
+    // is published.
+    private volatile Map<String, Student> students;
+    private volatile SubjectCatalogue catalogue;
+    private volatile EnrollmentCounters enrollmentCounters; // by catalogue ordinal
+    private RegistrationSet registeredCombinations; // (studentId, subjectId) pairs
+    private Map<String, List<String>> subjectsByStudent; // studentId -> subjectIds (immutable, replaced on change)
+    private Map<String, Set<String>> studentsBySubject; // subjectId -> studentIds
+    private Map<String, SubjectRow> loadedSubjects; // in file order, only while loading
+    private RegistrationJournal journal;
+    private ScheduledExecutorService compactor;
+    private DataFileWatcher fileWatcher;
+    private long loadTimeMillis;
+    private IntConsumer loadProgress;
+    private volatile boolean csvLoadFailed;
+    private boolean snapshotStale;
+    private long loadBytes; // size of the files the data was loaded from
+    private final RegistrationMetrics metrics = RegistrationMetrics.fromSystemProperties();
+    private final List<RegistrationListener> listeners = new CopyOnWriteArrayList<>();
+    // Pairs reserved here but not yet committed (with a count, since two local
+    // threads may race for the same pair), and those among them that another
+    // process committed first. Rare conflict paths synchronize on pendingPairs.
+    private final Map<String, Integer> pendingPairs = new ConcurrentHashMap<>();
+    private final Set<String> lostPairs = ConcurrentHashMap.newKeySet();
+    // Registering threads hold the read lock from their journal append until
+    // the pair is indexed or given back. Compaction rotates the journal under
+    // the write lock, so every record in the rotated segment is in the
+    // per-student index by the time compaction copies it.
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    // Enrollment minus roster size of each subject as loaded. The data files
+    // may count seats that have no registration row, and since every
+    // registration adds to both, the difference never changes. Snapshots
+    // store this plus the roster they hold, not the live count, which also
+    // has seats still waiting for their journal write, here or elsewhere.
+    private final Map<String, Integer> enrollmentOffsets = new ConcurrentHashMap<>();
+    
+    // A subject as read from a data file, with the enrollment count stored next to it
+    private static final class SubjectRow {
+        final Subject subject;
+        final int enrollment;
+        
+        SubjectRow(Subject subject, int enrollment) {
+            this.subject = subject;
+            this.enrollment = enrollment;
+        }
+    }
+    
+    // Loads every data file, so create one instance per application and share it
     public Registration() {
+        this(null);
+    }
+    
+    // loadProgress receives the load percentage (0-100) from loader threads
+    public Registration(IntConsumer loadProgress) {
+        this.loadProgress = loadProgress;
         students = new HashMap<>();
-        subjects = new HashMap<>();
-        registeredCombinations = new HashSet<>();
+        loadedSubjects = new LinkedHashMap<>(); // keeps catalogue order
+        registeredCombinations = new RegistrationSet();
+        subjectsByStudent = new ConcurrentHashMap<>();
+        studentsBySubject = new ConcurrentHashMap<>();
+        
+        long start = System.nanoTime();
         loadData();
+        loadTimeMillis = (System.nanoTime() - start) / 1_000_000;
+        metrics.stopRead(RegistrationMetrics.Operation.LOAD, start, loadBytes);
+        System.out.println("Loaded " + students.size() + " students, " + catalogue.size() + " subjects, "
+                         + registeredCombinations.size() + " registrations in " + loadTimeMillis + " ms");
+        
+        startCompactor();
+        if (WATCH_FILES) {
+            startFileWatcher();
+        }
+        if (snapshotStale && compactor != null) {
+            // Next start can skip CSV parsing
+            compactor.execute(this::writeSnapshot);
+        }
+        metrics.registerMBean();
+        if (compactor != null) {
+            metrics.scheduleDump(compactor, METRICS_DUMP_SECONDS);
+        }
     }
     
     private void loadData() {
-        loadStudents();
-        loadSubjects();
-        loadRegistrations();
-    }
-    
-    private void loadStudents() {
-        try (BufferedReader br = new BufferedReader(new FileReader(STUDENTS_CSV))) {
-            String line;
-            br.readLine(); // skip header
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 7) {
-                    LocalDate birthDate = LocalDate.parse(data[4]);
-                    Student student = new Student(data[0], data[1], data[2], data[3],
-                                                birthDate, data[5], data[6]);
-                    students.put(data[0], student);
+        if (loadSnapshot()) {
+            if (loadProgress != null) {
+                loadProgress.accept(100);
+            }
+        } else {
+            loadCsvFiles();
+            snapshotStale = !csvLoadFailed;
+        }
+        SubjectCatalogue loaded = new SubjectCatalogue(loadedSubjects.values().stream()
+                                                       .map(row -> row.subject).collect(Collectors.toList()));
+        AtomicEnrollmentCounters loadedCounts = new AtomicEnrollmentCounters(loaded.size(), ordinal ->
+            loadedSubjects.get(loaded.get(ordinal).getSubjectId()).enrollment);
+        catalogue = loaded;
+        enrollmentCounters = loadedCounts;
+        loadedSubjects.forEach((subjectId, row) ->
+            enrollmentOffsets.put(subjectId, row.enrollment - rosterSize(subjectId)));
+        loadedSubjects = null;
+        replayJournal();
+        openEnrollmentCounters(loadedCounts);
+    }
+    
+    // subjects.csv is no longer rewritten as registrations come in, so the
+    // counter file holds the enrollment counts between compactions. It is
+    // shared by every process using this data directory and decides who gets
+    // the last seats. Opening it raises any stored count that is lower than
+    // the one just loaded and replayed from the journal. Without it the
+    // counts stay in memory.
+    private void openEnrollmentCounters(AtomicEnrollmentCounters loadedCounts) {
+        try {
+            enrollmentCounters = EnrollmentCounterFile.open(Paths.get(ENROLLMENT_FILE), catalogue.getSubjects(),
+                                                            loadedCounts::get, ENROLLMENT_FORCE);
+        } catch (IOException e) {
+            System.err.println("Error opening enrollment counters: " + e.getMessage());
+        }
+    }
+    
+    // Returns the new enrollment, or -1 if the subject is full. Ordinals never
+    // change, so the subject may come from an older catalogue version.
+    private int reserveSeat(Subject subject) {
+        return enrollmentCounters.tryIncrement(catalogue.ordinalOf(subject.getSubjectId()),
+                                               subject.getMaxCapacity());
+    }
+    
+    private void releaseSeat(String subjectId) {
+        enrollmentCounters.decrement(catalogue.ordinalOf(subjectId));
+    }
+    
+    // Compaction, snapshot writes and exports capture the whole in-memory
+    // state, so processes sharing the data directory take turns through a lock
+    // file, and each first reads the journal tail so its state includes every
+    // other process's registrations. The monitor keeps this process's own
+    // callers from overlapping, which a file lock cannot do within one JVM.
+    private synchronized void runExclusively(MaintenanceTask task) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(MAINTENANCE_LOCK_FILE),
+                                                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                if (journal != null) {
+                    journal.refresh();
+                }
+                task.run();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+    
+    private interface MaintenanceTask {
+        void run() throws IOException;
+    }
+    
+    // Uses the binary snapshot when it is newer than all three CSV files
+    private boolean loadSnapshot() {
+        Path snapshot = Paths.get(SNAPSHOT_FILE);
+        if (!RegistrationSnapshot.isNewerThan(snapshot, Paths.get(STUDENTS_CSV),
+                                              Paths.get(SUBJECTS_CSV), Paths.get(REGISTRATIONS_CSV))) {
+            return false;
+        }
+        
+        long start = System.nanoTime();
+        try {
+            RegistrationSnapshot.read(snapshot, new RegistrationSnapshot.Handler() {
+                @Override
+                public void onStudent(Student student) {
+                    students.put(student.getStudentId(), student);
                 }
+                
+                @Override
+                public void onSubject(Subject subject, int currentEnrollment) {
+                    loadedSubjects.put(subject.getSubjectId(), new SubjectRow(subject, currentEnrollment));
+                }
+                
+                @Override
+                public void onRegistration(String studentId, String subjectId) {
+                    if (registeredCombinations.add(studentId, subjectId)) {
+                        addToIndexes(studentId, subjectId);
+                    }
+                }
+            });
+            System.out.println("Read snapshot " + SNAPSHOT_FILE + " in "
+                             + (System.nanoTime() - start) / 1_000_000 + " ms");
+            loadBytes = fileSize(SNAPSHOT_FILE);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Ignoring snapshot, loading CSV files: " + e.getMessage());
+            students.clear();
+            loadedSubjects.clear();
+            registeredCombinations = new RegistrationSet();
+            subjectsByStudent.clear();
+            studentsBySubject.clear();
+            return false;
+        }
+    }
+    
+    private void writeSnapshot() {
+        try {
+            runExclusively(this::writeSnapshotNow);
+        } catch (IOException e) {
+            System.err.println("Error writing snapshot: " + e.getMessage());
+        }
+    }
+    
+    private void writeSnapshotNow() throws IOException {
+        long start = metrics.start();
+        writeSnapshotFile();
+        metrics.stopWrite(RegistrationMetrics.Operation.SNAPSHOT_WRITE, start, fileSize(SNAPSHOT_FILE));
+    }
+    
+    private void writeSnapshotFile() throws IOException {
+        writeSnapshotFile(committedRegistrations());
+    }
+    
+    // Each count is derived from the registrations written with it, so on
+    // the next start the journal replay adds exactly the seats the snapshot
+    // lacks
+    private void writeSnapshotFile(Map<String, List<String>> registrations) throws IOException {
+        Map<String, Integer> rosterSizes = new HashMap<>();
+        for (List<String> subjectIds : registrations.values()) {
+            for (String subjectId : subjectIds) {
+                rosterSizes.merge(subjectId, 1, Integer::sum);
+            }
+        }
+        List<Subject> subjects = catalogue.getSubjects();
+        RegistrationSnapshot.write(Paths.get(SNAPSHOT_FILE), students.values(), subjects, ordinal -> {
+            String subjectId = subjects.get(ordinal).getSubjectId();
+            return enrollmentOffsets.getOrDefault(subjectId, 0) + rosterSizes.getOrDefault(subjectId, 0);
+        }, registrations);
+    }
+    
+    // A copy of the per-student index, which only holds committed pairs (the
+    // registration set also holds pairs still waiting for their journal
+    // flush, which may yet fail). The lists are immutable, so copying the map
+    // fixes one set of pairs for everything written from it.
+    private Map<String, List<String>> committedRegistrations() {
+        return new HashMap<>(subjectsByStudent);
+    }
+    
+    private int rosterSize(String subjectId) {
+        Set<String> studentIds = studentsBySubject.get(subjectId);
+        return studentIds == null ? 0 : studentIds.size();
+    }
+    
+    private void loadCsvFiles() {
+        long totalBytes = fileSize(STUDENTS_CSV) + fileSize(SUBJECTS_CSV) + fileSize(REGISTRATIONS_CSV);
+        loadBytes = totalBytes;
+        AtomicLong bytesLoaded = new AtomicLong();
+        AtomicInteger lastPercent = new AtomicInteger(-1);
+        LongConsumer progress = bytes -> {
+            if (loadProgress == null || totalBytes == 0) {
+                return;
+            }
+            // Only report whole-percent steps, whichever thread gets there first
+            int percent = (int) (bytesLoaded.addAndGet(bytes) * 100 / totalBytes);
+            int last = lastPercent.get();
+            if (percent > last && lastPercent.compareAndSet(last, percent)) {
+                loadProgress.accept(percent);
+            }
+        };
+        
+        // A row left unterminated by an interrupted write may be missing fields,
+        // and the next appended record would be glued onto it, so it is dropped
+        for (String fileName : new String[] {STUDENTS_CSV, SUBJECTS_CSV, REGISTRATIONS_CSV}) {
+            try {
+                AtomicFiles.repairTornTail(Paths.get(fileName));
+            } catch (IOException e) {
+                System.err.println("Error checking " + fileName + ": " + e.getMessage());
+            }
+        }
+        
+        // The three files are independent, so read them at the same time
+        try {
+            CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> loadStudents(progress)),
+                CompletableFuture.runAsync(() -> loadSubjects(progress)),
+                CompletableFuture.runAsync(() -> loadRegistrations(progress))
+            ).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    private void loadStudents(LongConsumer progress) {
+        try {
+            List<Student> loaded = readInChunks(STUDENTS_CSV, STUDENT_FIELDS, progress, Registration::toStudent);
+            for (Student student : loaded) {
+                students.put(student.getStudentId(), student);
             }
         } catch (IOException e) {
             System.err.println("Error loading students: " + e.getMessage());
+            csvLoadFailed = true;
         }
     }
     
-    private void loadSubjects() {
-        try (BufferedReader br = new BufferedReader(new FileReader(SUBJECTS_CSV))) {
-            String line;
-            br.readLine(); // skip header
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 7) {
-                    String prerequisite = data[4].isEmpty() ? null : data[4];
-                    Subject subject = new Subject(data[0], data[1], Integer.parseInt(data[2]),
-                                                data[3], prerequisite, Integer.parseInt(data[5]),
-                                                Integer.parseInt(data[6]));
-                    subjects.put(data[0], subject);
-                }
+    private void loadSubjects(LongConsumer progress) {
+        try {
+            List<SubjectRow> loaded = readInChunks(SUBJECTS_CSV, SUBJECT_FIELDS, progress, Registration::toSubject);
+            for (SubjectRow row : loaded) {
+                loadedSubjects.put(row.subject.getSubjectId(), row);
             }
         } catch (IOException e) {
             System.err.println("Error loading subjects: " + e.getMessage());
+            csvLoadFailed = true;
         }
     }
     
-    private void loadRegistrations() {
-        try (BufferedReader br = new BufferedReader(new FileReader(REGISTRATIONS_CSV))) {
-            String line;
-            br.readLine(); // skip header
-            while ((line = br.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length >= 2) {
-                    registeredCombinations.add(data[0] + "_" + data[1]);
+    private static Student toStudent(CsvReader.Row row) {
+        return new Student(row.get(0), row.get(1), row.get(2), row.get(3),
+                           row.getDate(4), row.get(5), row.get(6));
+    }
+    
+    private static SubjectRow toSubject(CsvReader.Row row) {
+        String prerequisite = row.isEmpty(4) ? null : row.get(4);
+        Subject subject = new Subject(row.get(0), row.get(1), row.getInt(2),
+                                      row.get(3), prerequisite, row.getInt(5));
+        return new SubjectRow(subject, row.getInt(6));
+    }
+    
+    private void loadRegistrations(LongConsumer progress) {
+        try {
+            // The registration set and indexes are concurrent, so chunks add to them directly
+            readInChunks(REGISTRATIONS_CSV, REGISTRATION_FIELDS, progress, row -> {
+                String studentId = row.get(0);
+                String subjectId = row.get(1);
+                if (registeredCombinations.add(studentId, subjectId)) {
+                    addToIndexes(studentId, subjectId);
                 }
-            }
+                return null;
+            });
         } catch (IOException e) {
             System.err.println("Error loading registrations: " + e.getMessage());
+            csvLoadFailed = true;
         }
     }
     
-    // Model methods for registration validation with capacity check
-    public boolean canRegisterWithCapacity(String studentId, String subjectId) {
-        Student student = students.get(studentId);
-        Subject subject = subjects.get(subjectId);
+    // Parses a CSV file in line-aligned chunks on the common fork-join pool and
+    // returns the non-null mapped rows in file order. Rows without exactly
+    // fieldCount fields (e.g. two records glued together) are skipped and
+    // reported instead of being misread.
+    private static <T> List<T> readInChunks(String fileName, int fieldCount, LongConsumer progress,
+                                            Function<CsvReader.Row, T> mapper) throws IOException {
+        Path path = Paths.get(fileName);
+        long start = System.nanoTime();
+        long[] bounds = CsvReader.splitAtLines(path, LOAD_CHUNK_BYTES);
+        LongAdder rows = new LongAdder();
+        LongAdder malformed = new LongAdder();
         
-        if (student == null || subject == null) {
-            return false;
+        List<List<T>> chunks;
+        try {
+            chunks = IntStream.range(0, bounds.length - 1).parallel()
+                .mapToObj(i -> {
+                    List<T> chunk = new ArrayList<>();
+                    CsvReader reader = new CsvReader(progress);
+                    try {
+                        rows.add(reader.read(path, bounds[i], bounds[i + 1], i == 0, row -> {
+                            if (row.size() != fieldCount) {
+                                malformed.increment();
+                                return;
+                            }
+                            T value = mapper.apply(row);
+                            if (value != null) {
+                                chunk.add(value);
+                            }
+                        }));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return chunk;
+                })
+                .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
         
-        // Check age requirement
-        if (!student.isAgeValid()) {
+        List<T> result = new ArrayList<>();
+        for (List<T> chunk : chunks) {
+            result.addAll(chunk);
+        }
+        reportLoad(fileName, rows.sum(), System.nanoTime() - start, bounds.length - 1);
+        if (malformed.sum() > 0) {
+            System.err.println("Skipped " + malformed.sum() + " malformed row(s) in " + fileName
+                             + "; expected " + fieldCount + " fields per row");
+        }
+        return result;
+    }
+    
+    // Parses the lines appended in [from, to), or the whole file if from is 0
+    private static <T> List<T> readChanged(String fileName, int fieldCount, long from, long to,
+                                           Function<CsvReader.Row, T> mapper) throws IOException {
+        if (from == 0) {
+            return readInChunks(fileName, fieldCount, null, mapper);
+        }
+        List<T> result = new ArrayList<>();
+        int[] malformed = new int[1];
+        new CsvReader().read(Paths.get(fileName), from, to, false, row -> {
+            if (row.size() == fieldCount) {
+                result.add(mapper.apply(row));
+            } else {
+                malformed[0]++;
+            }
+        });
+        if (malformed[0] > 0) {
+            System.err.println("Skipped " + malformed[0] + " malformed row(s) appended to " + fileName
+                             + "; expected " + fieldCount + " fields per row");
+        }
+        return result;
+    }
+    
+    private static void reportLoad(String fileName, long rows, long elapsedNanos, int chunks) {
+        double rowsPerSecond = elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        System.out.println(String.format("Read %d rows from %s in %d ms using %d chunk(s) (%.0f rows/s)",
+                                         rows, fileName, elapsedNanos / 1_000_000, chunks, rowsPerSecond));
+    }
+    
+    private static long fileSize(String fileName) {
+        try {
+            return Files.size(Paths.get(fileName));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+    
+    // Registrations made since the last snapshot live only in the journal
+    private void replayJournal() {
+        RegistrationJournal opened = new RegistrationJournal(JOURNAL_FILE, COMMIT_WINDOW_MICROS, JOURNAL_FSYNC, metrics);
+        try {
+            opened.open(this::applyJournalRecord,
+                        (studentId, subjectId) -> lostPairs.remove(pairKey(studentId, subjectId)));
+            journal = opened;
+        } catch (IOException e) {
+            System.err.println("Error opening registration journal: " + e.getMessage());
+        }
+    }
+    
+    // Applies a journal record on open, and afterwards the records other
+    // processes append, as the journal discovers them
+    private void applyJournalRecord(String studentId, String subjectId, int enrollment) {
+        if (registeredCombinations.add(studentId, subjectId)) {
+            countReplayedSeat(subjectId);
+            addToIndexes(studentId, subjectId);
+            fireRegistrationAdded(studentId, subjectId);
+            return;
+        }
+        synchronized (pendingPairs) {
+            // Re-checked under the lock: a local reservation may just have been abandoned
+            String key = pairKey(studentId, subjectId);
+            if (registeredCombinations.add(studentId, subjectId)) {
+                countReplayedSeat(subjectId);
+                addToIndexes(studentId, subjectId);
+                fireRegistrationAdded(studentId, subjectId);
+            } else if (pendingPairs.containsKey(key) && lostPairs.add(key)) {
+                // Committed by the other process, so indexed now; the local
+                // record must not be committed, and its seat is given back
+                countReplayedSeat(subjectId);
+                addToIndexes(studentId, subjectId);
+                fireRegistrationAdded(studentId, subjectId);
+            }
+        }
+    }
+    
+    // The counter file already holds every process's seats, but in-memory
+    // counts (on open, or without the file) catch up one seat per record.
+    // The enrollment a record carries is not used: it also counts seats that
+    // concurrent registrations took and then gave back.
+    private void countReplayedSeat(String subjectId) {
+        int ordinal = catalogue.ordinalOf(subjectId);
+        EnrollmentCounters counts = enrollmentCounters;
+        if (ordinal >= 0 && counts instanceof AtomicEnrollmentCounters) {
+            counts.tryIncrement(ordinal, -1);
+        }
+    }
+    
+    private static String pairKey(String studentId, String subjectId) {
+        return studentId + '\u0000' + subjectId;
+    }
+    
+    private void markPending(String studentId, String subjectId) {
+        pendingPairs.merge(pairKey(studentId, subjectId), 1, Integer::sum);
+    }
+    
+    private void clearPending(String studentId, String subjectId) {
+        pendingPairs.computeIfPresent(pairKey(studentId, subjectId), (key, count) -> count == 1 ? null : count - 1);
+    }
+    
+    // Reads other processes' registrations from the journal tail; registering
+    // does this too, so it only matters for processes that are mostly idle
+    private void refreshFromJournal() {
+        try {
+            journal.refresh();
+        } catch (IOException e) {
+            System.err.println("Error reading registration journal: " + e.getMessage());
+        }
+    }
+    
+    // Listeners hear about registrations after they are durable, both those
+    // made through this instance and those other processes made, once read
+    // from the journal, so views can update the affected rows instead of
+    // reloading
+    public void addRegistrationListener(RegistrationListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeRegistrationListener(RegistrationListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void fireRegistrationAdded(String studentId, String subjectId) {
+        for (RegistrationListener listener : listeners) {
+            listener.registrationAdded(studentId, subjectId);
+        }
+    }
+    
+    private void fireSeatReleased(String subjectId) {
+        for (RegistrationListener listener : listeners) {
+            listener.seatReleased(subjectId);
+        }
+    }
+    
+    private void addToIndexes(String studentId, String subjectId) {
+        // A student only has a handful of subjects, so a small copy-on-write list
+        // is far lighter than a concurrent set per student
+        subjectsByStudent.compute(studentId, (k, current) -> {
+            if (current == null) {
+                return List.of(subjectId);
+            }
+            List<String> updated = new ArrayList<>(current.size() + 1);
+            updated.addAll(current);
+            updated.add(subjectId);
+            return Collections.unmodifiableList(updated);
+        });
+        studentsBySubject.computeIfAbsent(subjectId, k -> ConcurrentHashMap.newKeySet()).add(studentId);
+    }
+    
+    // Picks up students and subjects added to or changed in the CSV files while
+    // the application runs. Registrations are not reloaded from
+    // registrations.csv; they arrive through the journal.
+    private void startFileWatcher() {
+        try {
+            fileWatcher = new DataFileWatcher(this::reloadFile, STUDENTS_CSV, SUBJECTS_CSV);
+        } catch (IOException e) {
+            System.err.println("Error watching data files, changes need a restart: " + e.getMessage());
+        }
+    }
+    
+    private void reloadFile(String fileName, long from, long to) throws IOException {
+        long start = System.nanoTime();
+        boolean changed = fileName.equals(STUDENTS_CSV) ? reloadStudents(from, to) : reloadSubjects(from, to);
+        if (changed) {
+            System.out.println("Reloaded " + fileName + (from == 0 ? "" : " (appended rows only)") + " in "
+                             + (System.nanoTime() - start) / 1_000_000 + " ms");
+            for (RegistrationListener listener : listeners) {
+                listener.catalogueReloaded();
+            }
+        }
+    }
+    
+    // Unchanged rows keep their Student objects. On a full reload students
+    // missing from the file are dropped; their registrations stay.
+    private boolean reloadStudents(long from, long to) throws IOException {
+        List<Student> parsed = readChanged(STUDENTS_CSV, STUDENT_FIELDS, from, to, Registration::toStudent);
+        Map<String, Student> current = students;
+        Map<String, Student> updated = from == 0 ? new HashMap<>(parsed.size() * 2) : new HashMap<>(current);
+        int changes = 0;
+        for (Student student : parsed) {
+            Student previous = current.get(student.getStudentId());
+            if (previous != null && previous.hasSameDetails(student)) {
+                updated.put(student.getStudentId(), previous);
+            } else {
+                updated.put(student.getStudentId(), student);
+                changes++;
+            }
+        }
+        if (changes == 0 && updated.size() == current.size()) {
             return false;
         }
-        
-        // Check if already registered
-        if (registeredCombinations.contains(studentId + "_" + subjectId)) {
+        students = updated;
+        return true;
+    }
+    
+    // Publishes the next catalogue version. New subjects are added to the end
+    // and changed ones replaced at their ordinal, which keeps their count.
+    // Subjects missing from the file stay until the next start, since students
+    // may be registered for them. The file's enrollment column only counts for
+    // new subjects; the live counts are kept for the others. New ordinals are
+    // this process's own, since the rows may have been appended in a
+    // different order than another process saw them; the counter file finds
+    // each new subject's slot by id, so both share its count.
+    private boolean reloadSubjects(long from, long to) throws IOException {
+        List<SubjectRow> parsed = readChanged(SUBJECTS_CSV, SUBJECT_FIELDS, from, to, Registration::toSubject);
+        SubjectCatalogue current = catalogue;
+        List<Subject> updated = new ArrayList<>(current.getSubjects());
+        Map<String, Integer> addedOrdinals = new HashMap<>();
+        List<Integer> addedCounts = new ArrayList<>(); // by ordinal - current.size()
+        int redefined = 0;
+        for (SubjectRow row : parsed) {
+            String subjectId = row.subject.getSubjectId();
+            int ordinal = current.ordinalOf(subjectId);
+            if (ordinal < 0) {
+                ordinal = addedOrdinals.getOrDefault(subjectId, -1);
+            }
+            if (ordinal < 0) {
+                enrollmentOffsets.put(subjectId, row.enrollment - rosterSize(subjectId));
+                addedOrdinals.put(subjectId, updated.size());
+                updated.add(row.subject);
+                addedCounts.add(row.enrollment);
+            } else if (ordinal >= current.size()) {
+                updated.set(ordinal, row.subject); // repeated within the new rows
+                addedCounts.set(ordinal - current.size(), row.enrollment);
+                enrollmentOffsets.put(subjectId, row.enrollment - rosterSize(subjectId));
+            } else if (!updated.get(ordinal).hasSameDefinition(row.subject)) {
+                updated.set(ordinal, row.subject);
+                redefined++;
+            }
+        }
+        if (addedOrdinals.isEmpty() && redefined == 0) {
             return false;
         }
         
-        // Check capacity
-        return subject.canRegister();
+        SubjectCatalogue next = current.withSubjects(updated);
+        if (!addedOrdinals.isEmpty()) {
+            enrollmentCounters.extend(next.getSubjects(), ordinal -> addedCounts.get(ordinal - current.size()));
+        }
+        catalogue = next;
+        System.out.println("Catalogue version " + next.getVersion() + ": " + addedOrdinals.size()
+                         + " new subject(s), " + redefined + " changed");
+        return true;
     }
     
-    // Model methods for registration validation without capacity check
-    public boolean canRegisterWithoutCapacity(String studentId, String subjectId) {
+    private void startCompactor() {
+        if (journal == null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded,
+                                         COMPACTION_CHECK_SECONDS, COMPACTION_CHECK_SECONDS, TimeUnit.SECONDS);
+        if (REFRESH_MILLIS > 0) {
+            compactor.scheduleWithFixedDelay(this::refreshFromJournal,
+                                             REFRESH_MILLIS, REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void compactIfNeeded() {
+        try {
+            if (journal.size() >= COMPACTION_THRESHOLD_BYTES) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.err.println("Error checking journal size: " + e.getMessage());
+        }
+    }
+    
+    // Checks every registration rule for one pair with a single lookup of each
+    // side and returns the first rule that fails, or OK
+    public RegistrationStatus evaluate(String studentId, String subjectId) {
+        SubjectCatalogue current = catalogue;
         Student student = students.get(studentId);
-        Subject subject = subjects.get(subjectId);
-        
-        if (student == null || subject == null) {
-            return false;
+        Subject subject = current.get(subjectId);
+        RegistrationStatus status = checkEligibility(current, student, subject, null);
+        if (status != RegistrationStatus.OK) {
+            return status;
+        }
+        if (registeredCombinations.contains(studentId, subjectId)) {
+            return RegistrationStatus.ALREADY_REGISTERED;
+        }
+        return subject.hasSeat(enrollmentCounters.get(current.ordinalOf(subjectId)))
+             ? RegistrationStatus.OK : RegistrationStatus.FULL;
+    }
+    
+    // Evaluates one student against every subject in catalogue order, for
+    // availability listings. The student lookup, age check and registered
+    // subjects are resolved once for the whole pass, and prerequisite chains are
+    // checked against the registered subjects as a bitset.
+    public void evaluateAll(String studentId, BiConsumer<Subject, RegistrationStatus> consumer) {
+        long start = metrics.start();
+        SubjectCatalogue current = catalogue;
+        PrerequisiteGraph prerequisites = current.getPrerequisites();
+        EnrollmentCounters counts = enrollmentCounters;
+        Student student = students.get(studentId);
+        BitSet completed = prerequisites.toBitSet(getRegisteredSubjectIds(studentId));
+        RegistrationStatus studentStatus = student == null ? RegistrationStatus.UNKNOWN_STUDENT
+                                         : !student.isAgeValid() ? RegistrationStatus.UNDERAGE
+                                         : RegistrationStatus.OK;
+        for (int ordinal = 0; ordinal < current.size(); ordinal++) {
+            Subject subject = current.get(ordinal);
+            RegistrationStatus status;
+            if (completed.get(ordinal)) {
+                status = RegistrationStatus.ALREADY_REGISTERED;
+            } else if (studentStatus != RegistrationStatus.OK) {
+                status = studentStatus;
+            } else if (!prerequisites.isSatisfied(ordinal, completed)) {
+                status = RegistrationStatus.PREREQ_MISSING;
+            } else {
+                status = subject.hasSeat(counts.get(ordinal)) ? RegistrationStatus.OK : RegistrationStatus.FULL;
+            }
+            consumer.accept(subject, status);
+        }
+        metrics.stop(RegistrationMetrics.Operation.EVALUATE_ALL, start);
+    }
+    
+    // Rules that depend only on the student and the subject themselves.
+    // acceptedEarlier holds subjects accepted for the student earlier in the
+    // same batch, or is null.
+    private RegistrationStatus checkEligibility(SubjectCatalogue current, Student student, Subject subject,
+                                                List<String> acceptedEarlier) {
+        if (student == null) {
+            return RegistrationStatus.UNKNOWN_STUDENT;
+        }
+        if (subject == null) {
+            return RegistrationStatus.UNKNOWN_SUBJECT;
         }
-        
-        // Check age requirement
         if (!student.isAgeValid()) {
-            return false;
+            return RegistrationStatus.UNDERAGE;
         }
         
-        // Check if already registered
-        if (registeredCombinations.contains(studentId + "_" + subjectId)) {
-            return false;
+        // A prerequisite counts as completed once the student is registered for
+        // it, or once an earlier request for it in the same batch was accepted
+        if (subject.hasPrerequisite()) {
+            Collection<String> completed = getRegisteredSubjectIds(student.getStudentId());
+            if (acceptedEarlier != null) {
+                List<String> withBatch = new ArrayList<>(completed);
+                withBatch.addAll(acceptedEarlier);
+                completed = withBatch;
+            }
+            if (!current.getPrerequisites().isSatisfied(subject.getSubjectId(), completed)) {
+                return RegistrationStatus.PREREQ_MISSING;
+            }
         }
-        
-        // For subjects without capacity limit (maxCapacity == -1)
-        return subject.getMaxCapacity() == -1;
+        return RegistrationStatus.OK;
+    }
+    
+    // Model methods for registration validation with capacity check
+    public boolean canRegisterWithCapacity(String studentId, String subjectId) {
+        return evaluate(studentId, subjectId) == RegistrationStatus.OK;
     }
     
+    // Model methods for registration validation without capacity check
+    // (only subjects without a capacity limit, maxCapacity == -1)
+    public boolean canRegisterWithoutCapacity(String studentId, String subjectId) {
+        Subject subject = catalogue.get(subjectId);
+        return subject != null && subject.getMaxCapacity() == -1
+            && evaluate(studentId, subjectId) == RegistrationStatus.OK;
+    }
+    
+    // Safe to call from many threads at once: the student/subject pair is claimed
+    // with an atomic set insertion and the seat with a CAS on its counter, so a
+    // subject never goes over maxCapacity
     public boolean registerStudent(String studentId, String subjectId) {
-        if (!canRegisterWithCapacity(studentId, subjectId)) {
-            return false;
+        return register(studentId, subjectId) == RegistrationStatus.OK;
+    }
+    
+    // Same as registerStudent, but reports why a registration was refused
+    public RegistrationStatus register(String studentId, String subjectId) {
+        long start = metrics.start();
+        RegistrationStatus status = registerDurably(studentId, subjectId);
+        metrics.recordOutcome(status);
+        metrics.stop(RegistrationMetrics.Operation.REGISTER, start);
+        return status;
+    }
+    
+    private RegistrationStatus registerDurably(String studentId, String subjectId) {
+        if (journal == null) {
+            System.err.println("Error saving registration: journal is not available");
+            return RegistrationStatus.SAVE_FAILED;
         }
         
-        Subject subject = subjects.get(subjectId);
-        
-        // Check prerequisite
-        if (subject.hasPrerequisite()) {
-            // For simplicity, assume prerequisite check passes
-            // In real implementation, check if student has completed prerequisite
+        int[] enrollment = new int[1];
+        RegistrationStatus status = reserve(studentId, subjectId, null, enrollment, 0);
+        if (status != RegistrationStatus.OK) {
+            return status;
         }
         
-        // Register student
-        registeredCombinations.add(studentId + "_" + subjectId);
-        subject.incrementEnrollment();
-        
-        // Save to CSV
-        saveRegistration(studentId, subjectId);
-        updateSubjectEnrollment(subjectId, subject.getCurrentEnrollment());
-        
-        return true;
+        // One sequential append, flushed together with concurrent registrations;
+        // the CSV files are only rewritten by compaction
+        commitLock.readLock().lock();
+        try {
+            try {
+                if (!journal.appendRegistration(studentId, subjectId, enrollment[0])) {
+                    loseToOtherProcess(studentId, subjectId);
+                    return RegistrationStatus.ALREADY_REGISTERED;
+                }
+            } catch (IOException e) {
+                System.err.println("Error saving registration: " + e.getMessage());
+                release(studentId, subjectId);
+                return RegistrationStatus.SAVE_FAILED;
+            }
+            
+            // Visible to profile and roster queries only once durable
+            clearPending(studentId, subjectId);
+            addToIndexes(studentId, subjectId);
+        } finally {
+            commitLock.readLock().unlock();
+        }
+        fireRegistrationAdded(studentId, subjectId);
+        return RegistrationStatus.OK;
     }
     
-    private void saveRegistration(String studentId, String subjectId) {
-        try (FileWriter fw = new FileWriter(REGISTRATIONS_CSV, true)) {
-            fw.write(studentId + "," + subjectId + "\n");
-        } catch (IOException e) {
-            System.err.println("Error saving registration: " + e.getMessage());
-        }
-    }
-    
-    private void updateSubjectEnrollment(String subjectId, int newEnrollment) {
-        // Update subjects.csv with new enrollment count
-        try {
-            List<String> lines = new ArrayList<>();
-            try (BufferedReader br = new BufferedReader(new FileReader(SUBJECTS_CSV))) {
-                String line;
-                while ((line = br.readLine()) != null) {
-                    if (line.startsWith("subjectId")) {
-                        lines.add(line); // header
-                    } else {
-                        String[] data = line.split(",");
-                        if (data[0].equals(subjectId)) {
-                            data[6] = String.valueOf(newEnrollment);
-                            lines.add(String.join(",", data));
-                        } else {
-                            lines.add(line);
-                        }
+    // Registers many pairs at once, e.g. a cohort import. Every pair is checked
+    // against the same rules as registerStudent, in list order, and all accepted
+    // pairs are written to the journal in one grouped append and flush.
+    // A subject accepted earlier in the list counts as a completed prerequisite
+    // for the same student's later requests: the group is written together, so
+    // if the write fails both fail, and a prerequisite another process
+    // committed first is registered all the same. Returns one status per
+    // request, in the same order.
+    public List<RegistrationStatus> registerStudents(List<RegistrationRequest> requests) {
+        long start = metrics.start();
+        List<RegistrationStatus> statuses = registerBatch(requests);
+        for (RegistrationStatus status : statuses) {
+            metrics.recordOutcome(status);
+        }
+        metrics.stop(RegistrationMetrics.Operation.REGISTER_BATCH, start);
+        return statuses;
+    }
+    
+    private List<RegistrationStatus> registerBatch(List<RegistrationRequest> requests) {
+        int size = requests.size();
+        RegistrationStatus[] statuses = new RegistrationStatus[size];
+        if (journal == null) {
+            System.err.println("Error saving registrations: journal is not available");
+            Arrays.fill(statuses, RegistrationStatus.SAVE_FAILED);
+            return Arrays.asList(statuses);
+        }
+        
+        List<RegistrationRequest> accepted = new ArrayList<>();
+        int[] acceptedEnrollments = new int[size];
+        int[] acceptedIndexes = new int[size]; // position of each accepted pair in requests
+        Map<String, List<String>> acceptedByStudent = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            RegistrationRequest request = requests.get(i);
+            String studentId = request.getStudentId();
+            statuses[i] = reserve(studentId, request.getSubjectId(), acceptedByStudent.get(studentId),
+                                  acceptedEnrollments, accepted.size());
+            if (statuses[i] == RegistrationStatus.OK) {
+                acceptedIndexes[accepted.size()] = i;
+                accepted.add(request);
+                acceptedByStudent.computeIfAbsent(studentId, k -> new ArrayList<>()).add(request.getSubjectId());
+            }
+        }
+        if (accepted.isEmpty()) {
+            return Arrays.asList(statuses);
+        }
+        
+        boolean[] committed;
+        commitLock.readLock().lock();
+        try {
+            try {
+                committed = journal.appendRegistrations(accepted, acceptedEnrollments);
+            } catch (IOException e) {
+                System.err.println("Error saving registrations: " + e.getMessage());
+                for (int i = 0; i < size; i++) {
+                    if (statuses[i] == RegistrationStatus.OK) {
+                        RegistrationRequest request = requests.get(i);
+                        release(request.getStudentId(), request.getSubjectId());
+                        statuses[i] = RegistrationStatus.SAVE_FAILED;
                     }
                 }
+                return Arrays.asList(statuses);
             }
             
-            try (FileWriter fw = new FileWriter(SUBJECTS_CSV)) {
-                for (String line : lines) {
-                    fw.write(line + "\n");
+            for (int i = 0; i < accepted.size(); i++) {
+                RegistrationRequest request = accepted.get(i);
+                if (committed[i]) {
+                    clearPending(request.getStudentId(), request.getSubjectId());
+                    addToIndexes(request.getStudentId(), request.getSubjectId());
+                } else {
+                    loseToOtherProcess(request.getStudentId(), request.getSubjectId());
+                    statuses[acceptedIndexes[i]] = RegistrationStatus.ALREADY_REGISTERED;
                 }
             }
+        } finally {
+            commitLock.readLock().unlock();
+        }
+        for (int i = 0; i < accepted.size(); i++) {
+            if (committed[i]) {
+                fireRegistrationAdded(accepted.get(i).getStudentId(), accepted.get(i).getSubjectId());
+            }
+        }
+        return Arrays.asList(statuses);
+    }
+    
+    // Checks the registration rules, then claims the pair and a seat. On OK the
+    // new enrollment count is stored in enrollments[index].
+    private RegistrationStatus reserve(String studentId, String subjectId, List<String> acceptedEarlier,
+                                       int[] enrollments, int index) {
+        SubjectCatalogue current = catalogue;
+        Subject subject = current.get(subjectId);
+        RegistrationStatus status = checkEligibility(current, students.get(studentId), subject, acceptedEarlier);
+        if (status != RegistrationStatus.OK) {
+            return status;
+        }
+        
+        // Marked before the pair is claimed, so that another process's record
+        // for the same pair, read in between, is recognised as a conflict
+        markPending(studentId, subjectId);
+        if (!registeredCombinations.add(studentId, subjectId)) {
+            clearPending(studentId, subjectId);
+            return RegistrationStatus.ALREADY_REGISTERED;
+        }
+        int enrollment = reserveSeat(subject);
+        if (enrollment == -1) {
+            abandonPair(studentId, subjectId);
+            return RegistrationStatus.FULL;
+        }
+        enrollments[index] = enrollment;
+        return RegistrationStatus.OK;
+    }
+    
+    // Undoes a successful reserve when the journal write fails
+    private void release(String studentId, String subjectId) {
+        releaseSeat(subjectId);
+        abandonPair(studentId, subjectId);
+        fireSeatReleased(subjectId);
+    }
+    
+    // Gives up a pair claimed by reserve. If another process's record for the
+    // pair arrived meanwhile, the pair stays as theirs (and is already indexed).
+    private void abandonPair(String studentId, String subjectId) {
+        synchronized (pendingPairs) {
+            if (!lostPairs.remove(pairKey(studentId, subjectId))) {
+                registeredCombinations.remove(studentId, subjectId);
+            }
+            clearPending(studentId, subjectId);
+        }
+    }
+    
+    // Another process committed the same pair first. Its journal record was
+    // read while this pair was still reserved here and indexed it as theirs,
+    // so the pair stays, but the seat taken here is given back.
+    private void loseToOtherProcess(String studentId, String subjectId) {
+        releaseSeat(subjectId);
+        clearPending(studentId, subjectId);
+        fireSeatReleased(subjectId);
+    }
+    
+    // Writes the in-memory state to registrations.csv and the binary snapshot,
+    // and drops the journal records that the new snapshot covers. Enrollment
+    // counts live in the counter file, so subjects.csv is left alone; see
+    // exportSubjects.
+    public void compact() {
+        try {
+            runExclusively(this::compactNow);
+        } catch (IOException e) {
+            System.err.println("Error compacting journal: " + e.getMessage());
+        }
+    }
+    
+    private void compactNow() {
+        long start = metrics.start();
+        // Rotate first, once in-flight registrations are indexed: every record
+        // in the rotated segment is then in the per-student index, so the state
+        // captured below covers all of them. Pairs reserved but not yet
+        // committed are left out; their records go to the new active journal.
+        commitLock.writeLock().lock();
+        try {
+            if (!journal.rotate()) {
+                System.err.println("Previous compaction incomplete, keeping active journal");
+            }
         } catch (IOException e) {
-            System.err.println("Error updating subject enrollment: " + e.getMessage());
+            System.err.println("Error rotating journal: " + e.getMessage());
+            return;
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+        
+        Map<String, List<String>> registrations = committedRegistrations();
+        List<String> registrationLines = new ArrayList<>();
+        registrations.forEach((studentId, subjectIds) -> {
+            for (String subjectId : subjectIds) {
+                registrationLines.add(CsvReader.escape(studentId) + "," + CsvReader.escape(subjectId));
+            }
+        });
+        
+        try {
+            AtomicFiles.writeLines(Paths.get(REGISTRATIONS_CSV), REGISTRATIONS_HEADER, registrationLines);
+            // Written after the CSV file so it stays the newer copy
+            writeSnapshotFile(registrations);
+            // The rotated journal is the last other copy of recent counts
+            enrollmentCounters.force();
+            journal.discardRotated();
+            metrics.stopWrite(RegistrationMetrics.Operation.COMPACTION, start,
+                              fileSize(REGISTRATIONS_CSV) + fileSize(SNAPSHOT_FILE));
+        } catch (IOException e) {
+            System.err.println("Error compacting journal: " + e.getMessage());
+        }
+    }
+    
+    // Regenerates subjects.csv with the current enrollment counts, e.g. before
+    // editing the catalogue by hand or handing the file to another system
+    public void exportSubjects() throws IOException {
+        runExclusively(() -> {
+            SubjectCatalogue current = catalogue;
+            List<String> subjectLines = new ArrayList<>(current.size());
+            for (int ordinal = 0; ordinal < current.size(); ordinal++) {
+                subjectLines.add(toCsvLine(current.get(ordinal), enrollmentCounters.get(ordinal)));
+            }
+            AtomicFiles.writeLines(Paths.get(SUBJECTS_CSV), SUBJECTS_HEADER, subjectLines);
+            // Keep the snapshot newer than the CSV files so the next start uses it
+            writeSnapshotNow();
+        });
+    }
+    
+    private static String toCsvLine(Subject subject, int currentEnrollment) {
+        return String.join(",",
+            CsvReader.escape(subject.getSubjectId()),
+            CsvReader.escape(subject.getSubjectName()),
+            String.valueOf(subject.getCredits()),
+            CsvReader.escape(subject.getInstructor()),
+            subject.hasPrerequisite() ? CsvReader.escape(subject.getPrerequisiteSubjectId()) : "",
+            String.valueOf(subject.getMaxCapacity()),
+            String.valueOf(currentEnrollment));
+    }
+    
+    // The login rules, shared by the GUI, the console controller and the HTTP
+    // server so they accept the same IDs and report the same reasons
+    public LoginStatus checkLogin(String studentId) {
+        if (!isValidStudentId(studentId)) {
+            return LoginStatus.INVALID_ID;
+        }
+        Student student = students.get(studentId);
+        if (student == null) {
+            return LoginStatus.UNKNOWN_STUDENT;
         }
+        return student.isAgeValid() ? LoginStatus.OK : LoginStatus.UNDERAGE;
+    }
+    
+    // 8 digits starting with 69
+    private static boolean isValidStudentId(String studentId) {
+        if (studentId == null || studentId.length() != 8 || !studentId.startsWith("69")) {
+            return false;
+        }
+        for (int i = 2; i < studentId.length(); i++) {
+            if (!Character.isDigit(studentId.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
     }
     
     // Getters
@@ -192,14 +1120,78 @@ public class Registration {
     }
     
     public Subject getSubject(String subjectId) {
-        return subjects.get(subjectId);
+        return catalogue.get(subjectId);
+    }
+    
+    // The current catalogue version; it never changes, so it can be iterated
+    // or indexed by ordinal while registrations and reloads go on
+    public SubjectCatalogue getCatalogue() {
+        return catalogue;
     }
     
     public Collection<Subject> getAllSubjects() {
-        return subjects.values();
+        return catalogue.getSubjects();
+    }
+    
+    // 0 for a subject not in the catalogue
+    public int getEnrollment(String subjectId) {
+        int ordinal = catalogue.ordinalOf(subjectId);
+        return ordinal < 0 ? 0 : enrollmentCounters.get(ordinal);
+    }
+    
+    public int getEnrollmentAt(int ordinal) {
+        return enrollmentCounters.get(ordinal);
+    }
+    
+    // Subjects the student is registered for, without scanning the catalogue
+    public List<Subject> getRegisteredSubjects(String studentId) {
+        List<String> subjectIds = subjectsByStudent.get(studentId);
+        if (subjectIds == null) {
+            return Collections.emptyList();
+        }
+        List<Subject> result = new ArrayList<>(subjectIds.size());
+        SubjectCatalogue current = catalogue;
+        for (String subjectId : subjectIds) {
+            Subject subject = current.get(subjectId);
+            if (subject != null) {
+                result.add(subject);
+            }
+        }
+        return result;
+    }
+    
+    // Students registered for the subject (the class roster)
+    public List<Student> getRegisteredStudents(String subjectId) {
+        Set<String> studentIds = studentsBySubject.get(subjectId);
+        if (studentIds == null) {
+            return Collections.emptyList();
+        }
+        List<Student> result = new ArrayList<>(studentIds.size());
+        for (String studentId : studentIds) {
+            Student student = students.get(studentId);
+            if (student != null) {
+                result.add(student);
+            }
+        }
+        return result;
+    }
+    
+    // Read-only snapshot of the student's registered subject IDs, for cheap
+    // membership checks while walking the catalogue
+    public Collection<String> getRegisteredSubjectIds(String studentId) {
+        List<String> subjectIds = subjectsByStudent.get(studentId);
+        return subjectIds == null ? Collections.emptyList() : subjectIds;
+    }
+    
+    public RegistrationMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public long getLoadTimeMillis() {
+        return loadTimeMillis;
     }
     
     public boolean isStudentRegistered(String studentId, String subjectId) {
-        return registeredCombinations.contains(studentId + "_" + subjectId);
+        return registeredCombinations.contains(studentId, subjectId);
     }
 }
\ No newline at end of file
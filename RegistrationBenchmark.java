@@ -0,0 +1,519 @@
+// RegistrationBenchmark.java - Benchmark harness for the model hot paths
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+// Every benchmark runs in a freshly forked JVM whose working directory holds
+// a generated data set, warms up for a few timed iterations and then reports
+// the mean and spread of the measured ones. Results only count when compared
+// against a run on the same machine.
+//
+// This is not a JMH module because JMH refuses benchmark classes in the
+// default package, and a class in a named package cannot import the model,
+// which lives in the default package like the rest of the code. It is built
+// and run with plain javac and java instead, like every other main class
+// here. What JMH would guard against is handled directly: each fork measures
+// a single benchmark, so calls stay monomorphic and one benchmark's profile
+// never leaks into another; every result is summed into a volatile field, so
+// the JIT cannot drop the calls; and the measured calls run in batches in a
+// method of their own, which the warmup gets compiled as a normal method,
+// so no iteration times on-stack-replacement code of the timing loop.
+//
+//   load                      CSV load into a new Registration (single shot per fork)
+//   load.snapshot             the same load from the binary snapshot of those files
+//   isStudentRegistered       half registered pairs, half unregistered
+//   canRegisterWithCapacity   random student and subject
+//   registerStudent.stubbed   journal written but not forced to disk
+//   registerStudent.fsync     real journal, one fsync per registration
+//   profile                   student, registered subjects and total credits
+//   isAgeValid                age rule of a random student
+//   registrationSet.contains  pair lookup in a RegistrationSet, half present
+//   hashSet.contains          the same lookups in a HashSet of "studentId_subjectId"
+//   registrationSet.heap      heap held by every pair in a RegistrationSet (single shot)
+//   hashSet.heap              heap held by the same pairs as HashSet strings (single shot)
+//
+// Usage: java RegistrationBenchmark [sizes] [benchmark prefixes]
+//   sizes: comma-separated registration counts, default 10k,1m,10m
+//   e.g.   java RegistrationBenchmark 10k,1m load,isStudent
+// Data sets are generated on first use under bench-data/<size>.
+public class RegistrationBenchmark {
+    private static final String[] BENCHMARKS = {"load", "load.snapshot", "isStudentRegistered",
+                                                "canRegisterWithCapacity", "registerStudent.stubbed",
+                                                "registerStudent.fsync", "profile", "isAgeValid",
+                                                "registrationSet.contains", "hashSet.contains",
+                                                "registrationSet.heap", "hashSet.heap"};
+    private static final String DATA_ROOT = "bench-data";
+    private static final int LOAD_FORKS = 3; // also used for the other single-shot benchmarks
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final int SAMPLE_SIZE = 4096;
+    private static final int BATCH_CALLS = 64; // calls between clock reads
+    // Each registration call uses up an unregistered pair, so those iterations
+    // also end after this many calls
+    private static final long MAX_REGISTRATIONS_PER_ITERATION = 20_000;
+    private static final String RESULT_PREFIX = "RESULT ";
+    
+    // Keeps results alive so the JIT cannot drop the measured calls
+    private static volatile long sink;
+    
+    // One benchmarked call; the return value is consumed
+    private interface Operation {
+        long run();
+    }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--fork")) {
+            runFork(args[1]);
+            return;
+        }
+        
+        String[] sizes = (args.length > 0 ? args[0] : "10k,1m,10m").split(",");
+        String[] selected = args.length > 1 ? args[1].split(",") : BENCHMARKS;
+        
+        System.out.printf("%-26s %6s %14s %12s %6s%n", "Benchmark", "Size", "Score", "Error", "Units");
+        for (String size : sizes) {
+            Path data = prepareData(size);
+            for (String benchmark : BENCHMARKS) {
+                if (isSelected(benchmark, selected)) {
+                    runBenchmark(benchmark, size, data);
+                }
+            }
+        }
+    }
+    
+    private static boolean isSelected(String benchmark, String[] selected) {
+        for (String prefix : selected) {
+            if (benchmark.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static Path prepareData(String size) throws IOException {
+        Path dir = Paths.get(DATA_ROOT, size);
+        if (!Files.exists(dir.resolve("registrations.csv"))) {
+            long registrations = DataGenerator.parseCount(size);
+            int students = (int) Math.min(registrations, 1_000_000);
+            System.out.println("Generating " + size + " data set in " + dir);
+            DataGenerator.generate(dir, students, 200, registrations, 42);
+        }
+        return dir;
+    }
+    
+    // Registration benchmarks change the data, so they run on a scratch copy
+    private static void runBenchmark(String benchmark, String size, Path data) throws Exception {
+        boolean mutates = benchmark.startsWith("registerStudent");
+        Path workDir = mutates ? copyData(data) : data;
+        try {
+            List<Double> scores = new ArrayList<>();
+            int forks = isSingleShot(benchmark) ? LOAD_FORKS : 1;
+            for (int fork = 0; fork < forks; fork++) {
+                // Start every fork from the CSV files alone, or from a fresh
+                // snapshot of them
+                deleteGenerated(workDir);
+                if (benchmark.equals("load.snapshot")) {
+                    fork("prepare.snapshot", workDir);
+                }
+                scores.addAll(fork(benchmark, workDir));
+            }
+            if (scores.isEmpty()) {
+                System.out.printf("%-26s %6s %14s%n", benchmark, size, "FAILED");
+                return;
+            }
+            
+            double mean = scores.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+            double variance = scores.stream().mapToDouble(score -> (score - mean) * (score - mean)).sum()
+                            / Math.max(1, scores.size() - 1);
+            System.out.printf("%-26s %6s %14.1f %12s %6s%n", benchmark, size, mean,
+                              "+- " + String.format("%.1f", Math.sqrt(variance)), units(benchmark));
+        } finally {
+            deleteGenerated(workDir);
+            if (mutates) {
+                deleteTree(workDir);
+            }
+        }
+    }
+    
+    // Loads and heap sizes are measured once per fork, in a fresh JVM
+    private static boolean isSingleShot(String benchmark) {
+        return benchmark.startsWith("load") || benchmark.endsWith(".heap");
+    }
+    
+    private static String units(String benchmark) {
+        return benchmark.startsWith("load") ? "ms" : benchmark.endsWith(".heap") ? "MB" : "ns/op";
+    }
+    
+    // Runs one benchmark in a new JVM and collects the scores it reports
+    private static List<Double> fork(String benchmark, Path workDir) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(absoluteClassPath());
+        if (benchmark.equals("registerStudent.stubbed")) {
+            command.add("-Dregistration.fsync=false");
+        }
+        if (benchmark.startsWith("registerStudent")) {
+            // Single caller: do not wait for other registrations to join a group
+            command.add("-Dregistration.commitWindowMicros=0");
+        }
+        command.add(RegistrationBenchmark.class.getName());
+        command.add("--fork");
+        command.add(benchmark);
+        
+        Process process = new ProcessBuilder(command).directory(workDir.toFile()).redirectErrorStream(true).start();
+        List<Double> scores = new ArrayList<>();
+        List<String> output = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    scores.add(Double.parseDouble(line.substring(RESULT_PREFIX.length())));
+                } else {
+                    output.add(line);
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            System.err.println(benchmark + " fork failed:");
+            output.forEach(System.err::println);
+            scores.clear();
+        }
+        return scores;
+    }
+    
+    private static String absoluteClassPath() {
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparator);
+            }
+            classPath.append(Paths.get(entry).toAbsolutePath());
+        }
+        return classPath.toString();
+    }
+    
+    // Inside the fork: the working directory is the data set
+    private static void runFork(String benchmark) throws IOException {
+        switch (benchmark) {
+            case "load":
+            case "load.snapshot": {
+                long start = System.nanoTime();
+                Registration registration = new Registration();
+                long elapsed = System.nanoTime() - start;
+                sink = registration.getLoadTimeMillis();
+                report(elapsed / 1e6);
+                System.exit(0);
+                break;
+            }
+            case "prepare.snapshot":
+                writeSnapshot();
+                System.exit(0);
+                break;
+            case "registrationSet.heap":
+            case "hashSet.heap":
+                report(pairSetMegabytes(benchmark.startsWith("registrationSet")));
+                System.exit(0);
+                break;
+            default:
+                break;
+        }
+        
+        List<String> studentIds = readColumn(Registration.STUDENTS_CSV);
+        List<String> subjectIds = readColumn(Registration.SUBJECTS_CSV);
+        Random random = new Random(7);
+        Operation operation;
+        long maxCalls = Long.MAX_VALUE;
+        
+        // The set lookups run without a Registration, on sets of their own
+        if (benchmark.endsWith(".contains")) {
+            BiPredicate<String, String> contains = loadPairs(benchmark.startsWith("registrationSet"));
+            String[][] pairs = sampleFilePairs(studentIds, subjectIds, random);
+            int[] next = {0};
+            operation = () -> {
+                String[] pair = pairs[next[0]++ & (SAMPLE_SIZE - 1)];
+                return contains.test(pair[0], pair[1]) ? 1 : 0;
+            };
+            runIterations(operation, maxCalls);
+            return;
+        }
+        
+        Registration registration = new Registration();
+        switch (benchmark) {
+            case "isStudentRegistered": {
+                String[][] pairs = samplePairs(registration, studentIds, subjectIds, random);
+                int[] next = {0};
+                operation = () -> {
+                    String[] pair = pairs[next[0]++ & (SAMPLE_SIZE - 1)];
+                    return registration.isStudentRegistered(pair[0], pair[1]) ? 1 : 0;
+                };
+                break;
+            }
+            case "canRegisterWithCapacity": {
+                String[][] pairs = randomPairs(studentIds, subjectIds, random);
+                int[] next = {0};
+                operation = () -> {
+                    String[] pair = pairs[next[0]++ & (SAMPLE_SIZE - 1)];
+                    return registration.canRegisterWithCapacity(pair[0], pair[1]) ? 1 : 0;
+                };
+                break;
+            }
+            case "registerStudent.stubbed":
+            case "registerStudent.fsync":
+                operation = freshRegistrations(registration, studentIds);
+                maxCalls = MAX_REGISTRATIONS_PER_ITERATION;
+                break;
+            case "profile": {
+                String[] students = new String[SAMPLE_SIZE];
+                for (int i = 0; i < SAMPLE_SIZE; i++) {
+                    students[i] = studentIds.get(random.nextInt(studentIds.size()));
+                }
+                int[] next = {0};
+                operation = () -> assembleProfile(registration, students[next[0]++ & (SAMPLE_SIZE - 1)]);
+                break;
+            }
+            case "isAgeValid": {
+                Student[] students = new Student[SAMPLE_SIZE];
+                for (int i = 0; i < SAMPLE_SIZE; i++) {
+                    students[i] = registration.getStudent(studentIds.get(random.nextInt(studentIds.size())));
+                }
+                int[] next = {0};
+                operation = () -> students[next[0]++ & (SAMPLE_SIZE - 1)].isAgeValid() ? 1 : 0;
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown benchmark " + benchmark);
+        }
+        runIterations(operation, maxCalls);
+    }
+    
+    private static void runIterations(Operation operation, long maxCalls) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measure(operation, maxCalls);
+        }
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            report(measure(operation, maxCalls));
+        }
+        System.exit(0); // without waiting for a background snapshot write
+    }
+    
+    // A load from the CSV files writes the snapshot in the background; wait
+    // for it so the next fork can load from it
+    private static void writeSnapshot() throws IOException {
+        sink = new Registration().getLoadTimeMillis();
+        Path snapshot = Paths.get("registrations.snapshot");
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
+        while (!Files.exists(snapshot)) {
+            if (System.nanoTime() > deadline) {
+                throw new IOException("Timed out waiting for " + snapshot);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted waiting for " + snapshot);
+            }
+        }
+    }
+    
+    // Every pair in registrations.csv, held as a RegistrationSet or, with
+    // packed false, as the HashSet of "studentId_subjectId" strings it replaced.
+    // The returned lookup keeps the set reachable.
+    private static BiPredicate<String, String> loadPairs(boolean packed) throws IOException {
+        Path file = Paths.get("registrations.csv");
+        if (packed) {
+            RegistrationSet set = new RegistrationSet();
+            new CsvReader().read(file, true, row -> set.add(row.get(0), row.get(1)));
+            return set::contains;
+        }
+        Set<String> set = new HashSet<>();
+        new CsvReader().read(file, true, row -> set.add(row.get(0) + "_" + row.get(1)));
+        return (studentId, subjectId) -> set.contains(studentId + "_" + subjectId);
+    }
+    
+    private static double pairSetMegabytes(boolean packed) throws IOException {
+        long before = usedHeapAfterGc();
+        BiPredicate<String, String> contains = loadPairs(packed);
+        long after = usedHeapAfterGc();
+        sink = contains.test("", "") ? 1 : 0;
+        return (after - before) / 1e6;
+    }
+    
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+    
+    private static void report(double score) {
+        System.out.println(RESULT_PREFIX + score);
+    }
+    
+    // Calls the operation for one iteration period, or at most maxCalls times,
+    // and returns the mean ns/op
+    private static double measure(Operation operation, long maxCalls) {
+        long consumed = 0;
+        long calls = 0;
+        long start = System.nanoTime();
+        long deadline = start + ITERATION_NANOS;
+        long now;
+        do {
+            consumed += runBatch(operation);
+            calls += BATCH_CALLS;
+            now = System.nanoTime();
+        } while (now < deadline && calls < maxCalls);
+        sink = consumed;
+        return (double) (now - start) / calls;
+    }
+    
+    // Called many times per iteration, so it is compiled as a whole method
+    // rather than only through on-stack replacement of a running loop
+    private static long runBatch(Operation operation) {
+        long consumed = 0;
+        for (int i = 0; i < BATCH_CALLS; i++) {
+            consumed += operation.run();
+        }
+        return consumed;
+    }
+    
+    // Mirrors the profile screen: student details, registered subjects, credits
+    private static long assembleProfile(Registration registration, String studentId) {
+        Student student = registration.getStudent(studentId);
+        StringBuilder profile = new StringBuilder(student.getFullName());
+        int totalCredits = 0;
+        for (Subject subject : registration.getRegisteredSubjects(studentId)) {
+            profile.append(subject.getSubjectId()).append(subject.getSubjectName());
+            totalCredits += subject.getCredits();
+        }
+        return profile.length() + totalCredits;
+    }
+    
+    // Half the pairs are registered (taken from the students' own registrations)
+    // and half are random, mostly unregistered pairs
+    private static String[][] samplePairs(Registration registration, List<String> studentIds,
+                                          List<String> subjectIds, Random random) {
+        String[][] pairs = randomPairs(studentIds, subjectIds, random);
+        for (int i = 0; i < SAMPLE_SIZE; i += 2) {
+            for (int attempt = 0; attempt < 100; attempt++) {
+                String studentId = studentIds.get(random.nextInt(studentIds.size()));
+                List<Subject> registered = registration.getRegisteredSubjects(studentId);
+                if (!registered.isEmpty()) {
+                    pairs[i] = new String[] {studentId, registered.get(random.nextInt(registered.size())).getSubjectId()};
+                    break;
+                }
+            }
+        }
+        return pairs;
+    }
+    
+    // Like samplePairs, but the registered half is drawn from registrations.csv
+    // (reservoir sampling), for lookups that run without a Registration
+    private static String[][] sampleFilePairs(List<String> studentIds, List<String> subjectIds,
+                                              Random random) throws IOException {
+        String[][] pairs = randomPairs(studentIds, subjectIds, random);
+        String[][] registered = new String[SAMPLE_SIZE / 2][];
+        long[] seen = {0};
+        new CsvReader().read(Paths.get("registrations.csv"), true, row -> {
+            long index = seen[0]++;
+            int slot = index < registered.length ? (int) index : (int) (random.nextDouble() * (index + 1));
+            if (slot < registered.length) {
+                registered[slot] = new String[] {row.get(0), row.get(1)};
+            }
+        });
+        for (int i = 0; i < registered.length && registered[i] != null; i++) {
+            pairs[2 * i] = registered[i];
+        }
+        return pairs;
+    }
+    
+    private static String[][] randomPairs(List<String> studentIds, List<String> subjectIds, Random random) {
+        String[][] pairs = new String[SAMPLE_SIZE][];
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            pairs[i] = new String[] {studentIds.get(random.nextInt(studentIds.size())),
+                                     subjectIds.get(random.nextInt(subjectIds.size()))};
+        }
+        return pairs;
+    }
+    
+    // Walks unlimited subjects without prerequisites, student by student, so
+    // every call is a new registration that passes all rules
+    private static Operation freshRegistrations(Registration registration, List<String> studentIds) {
+        List<String> open = new ArrayList<>();
+        for (Subject subject : registration.getAllSubjects()) {
+            if (subject.getMaxCapacity() == -1 && !subject.hasPrerequisite()) {
+                open.add(subject.getSubjectId());
+            }
+        }
+        List<String> eligible = new ArrayList<>();
+        for (String studentId : studentIds) {
+            if (registration.getStudent(studentId).isAgeValid()) {
+                eligible.add(studentId);
+            }
+        }
+        if (open.isEmpty() || eligible.isEmpty()) {
+            throw new IllegalStateException("No unlimited subject or eligible student to register");
+        }
+        
+        long[] position = {0};
+        long combinations = (long) open.size() * eligible.size();
+        return () -> {
+            while (position[0] < combinations) {
+                long index = position[0]++;
+                String studentId = eligible.get((int) (index % eligible.size()));
+                String subjectId = open.get((int) (index / eligible.size()));
+                if (!registration.isStudentRegistered(studentId, subjectId)) {
+                    return registration.registerStudent(studentId, subjectId) ? 1 : 0;
+                }
+            }
+            throw new IllegalStateException("Ran out of unregistered pairs");
+        };
+    }
+    
+    private static List<String> readColumn(String fileName) throws IOException {
+        List<String> values = new ArrayList<>();
+        new CsvReader().read(Paths.get(fileName), true, row -> values.add(row.get(0)));
+        return values;
+    }
+    
+    private static Path copyData(Path data) throws IOException {
+        Path copy = Paths.get(DATA_ROOT, data.getFileName() + "-scratch");
+        deleteTree(copy);
+        Files.createDirectories(copy);
+        for (String file : Arrays.asList(Registration.STUDENTS_CSV, Registration.SUBJECTS_CSV, "registrations.csv")) {
+            Files.copy(data.resolve(file), copy.resolve(file));
+        }
+        return copy;
+    }
+    
+    // Removes the journal, snapshot, counter and lock files a fork leaves behind
+    private static void deleteGenerated(Path dir) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir,
+                "{registrations.journal,registrations.journal.old,registrations.snapshot,registrations.snapshot.tmp,"
+                + "registrations.lock,subjects.enrollment}")) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+    
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+}
@@ -1,9 +1,10 @@
 // RegistrationGUI.java - Main GUI Application
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
 public class RegistrationGUI extends JFrame {
     private Registration registration;
@@ -15,14 +16,58 @@ public class RegistrationGUI extends JFrame {
     private JTextField studentIdField;
     private JTable availableSubjectsTable;
     private JTable subjectDetailsTable;
-    private DefaultTableModel availableTableModel;
-    private DefaultTableModel detailsTableModel;
+    private AvailableSubjectsTableModel availableTableModel;
+    private RegisteredSubjectsTableModel registeredTableModel;
+    private SubjectCatalogueTableModel detailsTableModel;
+    private JLabel detailsCountLabel;
+    private JComboBox<String> instructorFilter;
+    private JComboBox<String> creditsFilter;
+    private JCheckBox seatsFilter;
     private JLabel studentInfoLabel;
+    private String pendingSubjectId; // registration running in the background, at most one at a time
     
-    public RegistrationGUI() {
-        registration = new Registration();
+    public RegistrationGUI(Registration registration) {
+        this.registration = registration;
         initializeComponents();
         setupGUI();
+        
+        // Registrations arrive on the registering thread and reloads on the file
+        // watcher thread; apply them on the event dispatch thread
+        registration.addRegistrationListener(new RegistrationListener() {
+            @Override
+            public void registrationAdded(String studentId, String subjectId) {
+                SwingUtilities.invokeLater(() -> {
+                    availableTableModel.registrationAdded(studentId, subjectId);
+                    registeredTableModel.registrationAdded(studentId, subjectId);
+                });
+            }
+            
+            @Override
+            public void seatReleased(String subjectId) {
+                SwingUtilities.invokeLater(() -> availableTableModel.seatReleased(subjectId));
+            }
+            
+            @Override
+            public void catalogueReloaded() {
+                SwingUtilities.invokeLater(RegistrationGUI.this::reloadCatalogue);
+            }
+        });
+    }
+    
+    // Subjects were added or changed on disk; only the tables showing them are
+    // rebuilt, for the student who is logged in
+    private void reloadCatalogue() {
+        SubjectCatalogue catalogue = registration.getCatalogue();
+        if (catalogue.getVersion() != detailsTableModel.getCatalogueVersion()) {
+            detailsTableModel.setCatalogue(catalogue);
+            fillFilterChoices();
+            applyDetailsFilter();
+        }
+        updateDetailsCount();
+        if (currentStudentId != null) {
+            availableTableModel.load(currentStudentId);
+            registeredTableModel.load(currentStudentId);
+        }
     }
     
     private void loadStudentProfile() {
@@ -72,33 +117,11 @@ public class RegistrationGUI extends JFrame {
             System.err.println("Student details panel not found!");
         }
         
-        // Update registered subjects table
+        // Update registered subjects table; once loaded for this student it is
+        // kept current by registration events, so only a new login rebuilds it
         if (registeredSubjectsPanel != null) {
-            DefaultTableModel registeredTableModel = (DefaultTableModel) registeredSubjectsPanel.getClientProperty("tableModel");
-            JLabel totalCreditsLabel = (JLabel) registeredSubjectsPanel.getClientProperty("creditsLabel");
-            
-            if (registeredTableModel != null) {
-                registeredTableModel.setRowCount(0);
-                int totalCredits = 0;
-                
-                for (Subject subject : registration.getAllSubjects()) {
-                    if (registration.isStudentRegistered(currentStudentId, subject.getSubjectId())) {
-                        Object[] row = {
-                            subject.getSubjectId(),
-                            subject.getSubjectName(),
-                            subject.getCredits(),
-                            subject.getInstructor()
-                        };
-                        registeredTableModel.addRow(row);
-                        totalCredits += subject.getCredits();
-                    }
-                }
-                
-                if (totalCreditsLabel != null) {
-                    totalCreditsLabel.setText("Total Credits: " + totalCredits + " credits");
-                }
-            } else {
-                System.err.println("Registered table model not found!");
+            if (!currentStudentId.equals(registeredTableModel.getStudentId())) {
+                registeredTableModel.load(currentStudentId);
             }
         } else {
             System.err.println("Registered subjects panel not found!");
@@ -254,13 +277,7 @@ public class RegistrationGUI extends JFrame {
         ));
         
         // Table for registered subjects
-        String[] regColumns = {"Subject ID", "Subject Name", "Credits", "Instructor"};
-        DefaultTableModel registeredTableModel = new DefaultTableModel(regColumns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        registeredTableModel = new RegisteredSubjectsTableModel(registration);
         
         JTable registeredTable = new JTable(registeredTableModel);
         registeredTable.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -278,10 +295,11 @@ public class RegistrationGUI extends JFrame {
         totalCreditsLabel.setFont(new Font("Arial", Font.BOLD, 14));
         totalCreditsLabel.setForeground(new Color(40, 167, 69));
         summaryPanel.add(totalCreditsLabel);
+        registeredTableModel.addTableModelListener(e ->
+            totalCreditsLabel.setText("Total Credits: " + registeredTableModel.getTotalCredits() + " credits"));
         registeredSubjectsPanel.add(summaryPanel, BorderLayout.SOUTH);
         
         // Store references for updating
-        registeredSubjectsPanel.putClientProperty("tableModel", registeredTableModel);
         registeredSubjectsPanel.putClientProperty("creditsLabel", totalCreditsLabel);
         
         mainContentPanel.add(studentDetailsPanel);
@@ -371,20 +389,14 @@ public class RegistrationGUI extends JFrame {
         contentPanel.add(titleLabel, BorderLayout.NORTH);
         
         // Table for available subjects
-        String[] columnNames = {"Subject ID", "Subject Name", "Credits", "Instructor", 
-                               "Prerequisite", "Capacity", "Status", "Action"};
-        availableTableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 7; // Only action column is editable
-            }
-        };
+        availableTableModel = new AvailableSubjectsTableModel(registration);
         
         availableSubjectsTable = new JTable(availableTableModel);
         availableSubjectsTable.setFont(new Font("Arial", Font.PLAIN, 12));
         availableSubjectsTable.setRowHeight(35);
         availableSubjectsTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
         availableSubjectsTable.getTableHeader().setBackground(new Color(230, 240, 255));
+        availableSubjectsTable.setDefaultRenderer(Object.class, new LockedRowRenderer());
         
         // Add register buttons to table
         availableSubjectsTable.getColumn("Action").setCellRenderer(new ButtonRenderer());
@@ -424,15 +436,8 @@ public class RegistrationGUI extends JFrame {
         JPanel contentPanel = new JPanel(new BorderLayout());
         contentPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
         
-        // Table for subject details
-        String[] detailColumns = {"Subject ID", "Subject Name", "Credits", "Instructor", 
-                                 "Prerequisite", "Max Capacity", "Current Enrollment", "Available Slots"};
-        detailsTableModel = new DefaultTableModel(detailColumns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Table for subject details; rows are produced lazily for the viewport
+        detailsTableModel = new SubjectCatalogueTableModel(registration.getCatalogue(), registration::getEnrollmentAt);
         
         subjectDetailsTable = new JTable(detailsTableModel);
         subjectDetailsTable.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -440,6 +445,38 @@ public class RegistrationGUI extends JFrame {
         subjectDetailsTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
         subjectDetailsTable.getTableHeader().setBackground(new Color(230, 240, 255));
         
+        // Click a header to sort by that column, click again to reverse
+        subjectDetailsTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = subjectDetailsTable.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    detailsTableModel.toggleSort(subjectDetailsTable.convertColumnIndexToModel(column));
+                    updateDetailsCount();
+                }
+            }
+        });
+        
+        // Filter bar
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        instructorFilter = new JComboBox<>();
+        creditsFilter = new JComboBox<>();
+        fillFilterChoices();
+        seatsFilter = new JCheckBox("Has seats");
+        
+        ActionListener applyFilter = e -> applyDetailsFilter();
+        instructorFilter.addActionListener(applyFilter);
+        creditsFilter.addActionListener(applyFilter);
+        seatsFilter.addActionListener(applyFilter);
+        
+        detailsCountLabel = new JLabel();
+        filterPanel.add(new JLabel("Filter:"));
+        filterPanel.add(instructorFilter);
+        filterPanel.add(creditsFilter);
+        filterPanel.add(seatsFilter);
+        filterPanel.add(detailsCountLabel);
+        contentPanel.add(filterPanel, BorderLayout.NORTH);
+        
         JScrollPane detailsScrollPane = new JScrollPane(subjectDetailsTable);
         detailsScrollPane.setPreferredSize(new Dimension(900, 500));
         contentPanel.add(detailsScrollPane, BorderLayout.CENTER);
@@ -456,21 +493,9 @@ public class RegistrationGUI extends JFrame {
             return;
         }
         
-        if (studentId.length() != 8 || !studentId.startsWith("69")) {
-            JOptionPane.showMessageDialog(this, "Invalid Student ID format\n(Must be 8 digits starting with 69)", 
-                                        "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        
-        Student student = registration.getStudent(studentId);
-        if (student == null) {
-            JOptionPane.showMessageDialog(this, "Student ID not found in system", "Error", JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-        
-        if (!student.isAgeValid()) {
-            JOptionPane.showMessageDialog(this, "Age requirement not met (must be at least 15 years old)", 
-                                        "Error", JOptionPane.ERROR_MESSAGE);
+        LoginStatus status = registration.checkLogin(studentId);
+        if (status != LoginStatus.OK) {
+            JOptionPane.showMessageDialog(this, status.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
         
@@ -481,78 +506,149 @@ public class RegistrationGUI extends JFrame {
     
     private void handleLogout() {
         currentStudentId = null;
+        availableTableModel.load(null);
+        registeredTableModel.load(null);
         studentIdField.setText("");
         cardLayout.show(mainPanel, "login");
     }
     
+    // Rebuilds the table only when the student changes; after that it is kept
+    // current by registration events
     private void loadAvailableSubjects() {
-        availableTableModel.setRowCount(0);
-        
-        for (Subject subject : registration.getAllSubjects()) {
-            if (!registration.isStudentRegistered(currentStudentId, subject.getSubjectId())) {
-                String prerequisite = subject.hasPrerequisite() ? subject.getPrerequisiteSubjectId() : "None";
-                String capacity = subject.getMaxCapacity() == -1 ? "Unlimited" : 
-                                subject.getCurrentEnrollment() + "/" + subject.getMaxCapacity();
-                
-                String status;
-                boolean canRegister = registration.canRegisterWithCapacity(currentStudentId, subject.getSubjectId()) ||
-                                    registration.canRegisterWithoutCapacity(currentStudentId, subject.getSubjectId());
-                
-                if (subject.getMaxCapacity() != -1 && subject.getCurrentEnrollment() >= subject.getMaxCapacity()) {
-                    status = "FULL";
-                } else if (canRegister) {
-                    status = "Available";
-                } else {
-                    status = "Cannot Register";
-                }
-                
-                Object[] row = {
-                    subject.getSubjectId(),
-                    subject.getSubjectName(),
-                    subject.getCredits(),
-                    subject.getInstructor(),
-                    prerequisite,
-                    capacity,
-                    status,
-                    "Register"
-                };
-                
-                availableTableModel.addRow(row);
-            }
+        if (!currentStudentId.equals(availableTableModel.getStudentId())) {
+            availableTableModel.load(currentStudentId);
         }
     }
     
     private void showSubjectDetails() {
-        detailsTableModel.setRowCount(0);
-        
-        for (Subject subject : registration.getAllSubjects()) {
-            String prerequisite = subject.hasPrerequisite() ? subject.getPrerequisiteSubjectId() : "None";
-            String maxCap = subject.getMaxCapacity() == -1 ? "Unlimited" : String.valueOf(subject.getMaxCapacity());
-            String availableSlots = subject.getMaxCapacity() == -1 ? "Unlimited" : 
-                                  String.valueOf(subject.getMaxCapacity() - subject.getCurrentEnrollment());
-            
-            Object[] row = {
-                subject.getSubjectId(),
-                subject.getSubjectName(),
-                subject.getCredits(),
-                subject.getInstructor(),
-                prerequisite,
-                maxCap,
-                subject.getCurrentEnrollment(),
-                availableSlots
-            };
-            
-            detailsTableModel.addRow(row);
-        }
+        detailsTableModel.refresh(); // Picks up enrollment changes
+        updateDetailsCount();
         
         cardLayout.show(mainPanel, "details");
     }
     
+    // The choices come from the catalogue, so a reload may add some. A choice
+    // that is still offered stays selected; otherwise the filter falls back
+    // to all.
+    private void fillFilterChoices() {
+        String[] instructors = detailsTableModel.getInstructors();
+        String[] instructorChoices = new String[instructors.length + 1];
+        instructorChoices[0] = "All instructors";
+        System.arraycopy(instructors, 0, instructorChoices, 1, instructors.length);
+        setChoices(instructorFilter, instructorChoices);
+        
+        int[] credits = detailsTableModel.getCreditValues();
+        String[] creditChoices = new String[credits.length + 1];
+        creditChoices[0] = "All credits";
+        for (int i = 0; i < credits.length; i++) {
+            creditChoices[i + 1] = String.valueOf(credits[i]);
+        }
+        setChoices(creditsFilter, creditChoices);
+    }
+    
+    // Replacing the model does not fire an action event, so callers apply
+    // the filter themselves
+    private static void setChoices(JComboBox<String> filter, String[] choices) {
+        Object selected = filter.getSelectedItem();
+        DefaultComboBoxModel<String> model = new DefaultComboBoxModel<>(choices);
+        for (String choice : choices) {
+            if (choice.equals(selected)) {
+                model.setSelectedItem(choice);
+            }
+        }
+        filter.setModel(model);
+    }
+    
+    private void applyDetailsFilter() {
+        String instructor = instructorFilter.getSelectedIndex() == 0
+                          ? null : (String) instructorFilter.getSelectedItem();
+        int credits = creditsFilter.getSelectedIndex() == 0
+                    ? -1 : Integer.parseInt((String) creditsFilter.getSelectedItem());
+        detailsTableModel.setFilter(instructor, credits, seatsFilter.isSelected());
+        updateDetailsCount();
+    }
+    
+    private void updateDetailsCount() {
+        detailsCountLabel.setText("Showing " + detailsTableModel.getRowCount() + " of "
+                                + detailsTableModel.getTotalCount() + " subjects");
+    }
+    
+    // Registers on a background thread so a slow journal flush never freezes the
+    // window. The table shows the pending row and refuses further clicks until
+    // the result is posted back to the event dispatch thread.
+    private void submitRegistration(String subjectId, String subjectName) {
+        String studentId = currentStudentId;
+        pendingSubjectId = subjectId;
+        availableSubjectsTable.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        availableSubjectsTable.repaint();
+        
+        new SwingWorker<RegistrationStatus, Void>() {
+            @Override
+            protected RegistrationStatus doInBackground() {
+                return registration.register(studentId, subjectId);
+            }
+            
+            @Override
+            protected void done() {
+                pendingSubjectId = null;
+                availableSubjectsTable.setCursor(Cursor.getDefaultCursor());
+                availableSubjectsTable.repaint();
+                
+                RegistrationStatus result;
+                try {
+                    result = get();
+                } catch (Exception e) {
+                    System.err.println("Error registering: " + e.getMessage());
+                    result = RegistrationStatus.SAVE_FAILED;
+                }
+                
+                if (result == RegistrationStatus.OK) {
+                    JOptionPane.showMessageDialog(RegistrationGUI.this, 
+                        "Successfully registered for: " + subjectName,
+                        "Registration Success", 
+                        JOptionPane.INFORMATION_MESSAGE);
+                    if (!studentId.equals(currentStudentId)) {
+                        return; // Logged out while the registration was running
+                    }
+                    
+                    // Show option to go back to profile or continue registering
+                    int choice = JOptionPane.showConfirmDialog(RegistrationGUI.this,
+                        "Registration successful!\nDo you want to continue registering for more subjects?",
+                        "Continue Registration?",
+                        JOptionPane.YES_NO_OPTION);
+                    
+                    if (choice == JOptionPane.NO_OPTION) {
+                        showStudentProfile(); // Go back to profile
+                    }
+                } else {
+                    JOptionPane.showMessageDialog(RegistrationGUI.this, 
+                        "Registration failed: " + result.getMessage(),
+                        "Registration Failed", 
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
     private void showRegistrationPage() {
         loadAvailableSubjects(); // Refresh data
         cardLayout.show(mainPanel, "registration");
     }
     
+    // Greys out subjects whose prerequisite chain is not yet satisfied
+    class LockedRowRenderer extends javax.swing.table.DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value,
+                boolean isSelected, boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            if (!isSelected) {
+                boolean locked = "Locked".equals(table.getValueAt(row, AvailableSubjectsTableModel.STATUS_COLUMN));
+                setForeground(locked ? Color.GRAY : table.getForeground());
+            }
+            return this;
+        }
+    }
+    
     // Button Renderer for table
     class ButtonRenderer extends JButton implements javax.swing.table.TableCellRenderer {
         public ButtonRenderer() {
@@ -563,9 +659,14 @@ public class RegistrationGUI extends JFrame {
         public Component getTableCellRendererComponent(JTable table, Object value,
                 boolean isSelected, boolean hasFocus, int row, int column) {
             
-            String status = (String) table.getValueAt(row, 6);
+            String status = (String) table.getValueAt(row, AvailableSubjectsTableModel.STATUS_COLUMN);
             
-            if ("Available".equals(status)) {
+            if (pendingSubjectId != null && pendingSubjectId.equals(table.getValueAt(row, 0))) {
+                setText("Registering...");
+                setBackground(new Color(255, 193, 7));
+                setForeground(Color.BLACK);
+                setEnabled(false);
+            } else if ("Available".equals(status) && pendingSubjectId == null) {
                 setText("Register");
                 setBackground(new Color(40, 167, 69));
                 setForeground(Color.WHITE);
@@ -605,9 +706,10 @@ public class RegistrationGUI extends JFrame {
                 boolean isSelected, int row, int column) {
             
             currentRow = row;
-            String status = (String) table.getValueAt(row, 6);
+            String status = (String) table.getValueAt(row, AvailableSubjectsTableModel.STATUS_COLUMN);
             
-            if ("Available".equals(status)) {
+            // Clicks are ignored while another registration is still running
+            if ("Available".equals(status) && pendingSubjectId == null) {
                 label = "Register";
                 button.setText(label);
                 button.setBackground(new Color(40, 167, 69));
@@ -627,31 +729,10 @@ public class RegistrationGUI extends JFrame {
         @Override
         public Object getCellEditorValue() {
             if (isPushed) {
-                String subjectId = (String) availableSubjectsTable.getValueAt(currentRow, 0);
-                String subjectName = (String) availableSubjectsTable.getValueAt(currentRow, 1);
+                Subject subject = availableTableModel.getSubjectAt(
+                    availableSubjectsTable.convertRowIndexToModel(currentRow));
                 
-                if (registration.registerStudent(currentStudentId, subjectId)) {
-                    JOptionPane.showMessageDialog(RegistrationGUI.this, 
-                        "Successfully registered for: " + subjectName,
-                        "Registration Success", 
-                        JOptionPane.INFORMATION_MESSAGE);
-                    loadAvailableSubjects(); // Refresh table
-                    
-                    // Show option to go back to profile or continue registering
-                    int choice = JOptionPane.showConfirmDialog(RegistrationGUI.this,
-                        "Registration successful!\nDo you want to continue registering for more subjects?",
-                        "Continue Registration?",
-                        JOptionPane.YES_NO_OPTION);
-                    
-                    if (choice == JOptionPane.NO_OPTION) {
-                        showStudentProfile(); // Go back to profile
-                    }
-                } else {
-                    JOptionPane.showMessageDialog(RegistrationGUI.this, 
-                        "Registration failed. Please check requirements.",
-                        "Registration Failed", 
-                        JOptionPane.ERROR_MESSAGE);
-                }
+                submitRegistration(subject.getSubjectId(), subject.getSubjectName());
             }
             isPushed = false;
             return label;
@@ -668,5 +749,5 @@ public class RegistrationGUI extends JFrame {
         // Show login panel initially
         cardLayout.show(mainPanel, "login");
     }
-    
+
 }
\ No newline at end of file
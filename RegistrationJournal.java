@@ -0,0 +1,499 @@
+// RegistrationJournal.java - Append-only, checksummed write-ahead journal for registration events
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+// Appends use group commit: callers queue their encoded records and block, and
+// a single writer thread waits up to the commit window for more callers to
+// join, then writes the whole group with one gather write and one force.
+// Under load one fsync covers many registrations instead of one each.
+//
+// Several processes may share one journal. Each group is written under an
+// exclusive FileLock, right after reading the records other processes
+// appended since this one last looked. Those records go to the replay
+// handler, so every process follows the others incrementally instead of
+// reloading. Then each queued record is checked against what was read: one
+// whose pair another process committed first is dropped from the group and
+// reported as rejected. The journal offset acts as the version; a record
+// commits only if nothing conflicting was appended before it.
+public class RegistrationJournal implements Closeable {
+    // Called once per valid record, in append order: on open, and for records
+    // appended by other processes as they are discovered
+    public interface ReplayHandler {
+        void onRegistration(String studentId, String subjectId, int enrollment);
+    }
+    
+    // Asked under the file lock, after catching up, whether a queued record
+    // has to be dropped because another process committed its pair first
+    public interface ConflictCheck {
+        boolean conflicts(String studentId, String subjectId);
+    }
+    
+    private static final int MAGIC = 0x524A4E4C; // "RJNL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;        // magic + version
+    private static final int RECORD_HEADER_SIZE = 8; // payload length + CRC32 of payload
+    private static final int MAX_RECORD_SIZE = 4096;
+    private static final byte TYPE_REGISTRATION = 1;
+    
+    private final Path path;
+    private final Path rotatedPath;
+    private final long commitWindowNanos;
+    private final boolean fsync;
+    private final RegistrationMetrics metrics;
+    private FileChannel channel;
+    private Object fileKey;     // identity of the file channel is open on, to notice rotation
+    private long readPosition;  // end of the records applied so far, 0 before the header is checked
+    private ReplayHandler handler;
+    private ConflictCheck conflictCheck = (studentId, subjectId) -> false;
+    
+    // Group commit queue, guarded by queueLock
+    private final Object queueLock = new Object();
+    private List<PendingWrite> pending = new ArrayList<>();
+    private boolean running;
+    private Thread writer;
+    
+    // commitWindowMicros is how long the writer waits for more records before
+    // flushing a group; 0 flushes as soon as the previous group is done
+    public RegistrationJournal(String fileName, long commitWindowMicros) {
+        this(fileName, commitWindowMicros, true);
+    }
+    
+    // With fsync false a group is complete once written to the OS, not the disk
+    public RegistrationJournal(String fileName, long commitWindowMicros, boolean fsync) {
+        this(fileName, commitWindowMicros, fsync, new RegistrationMetrics(false));
+    }
+    
+    // Each group commit is recorded as a JOURNAL_COMMIT with the bytes written
+    public RegistrationJournal(String fileName, long commitWindowMicros, boolean fsync, RegistrationMetrics metrics) {
+        this.path = Paths.get(fileName);
+        this.rotatedPath = Paths.get(fileName + ".old");
+        this.commitWindowNanos = commitWindowMicros * 1000;
+        this.fsync = fsync;
+        this.metrics = metrics;
+    }
+    
+    // Replays a segment left over from an interrupted compaction, then the active
+    // segment, and opens the active segment for appending
+    public synchronized void open(ReplayHandler handler) throws IOException {
+        open(handler, conflictCheck);
+    }
+    
+    public synchronized void open(ReplayHandler handler, ConflictCheck conflictCheck) throws IOException {
+        this.handler = handler;
+        this.conflictCheck = conflictCheck;
+        openActive();
+        FileLock lock = channel.lock();
+        try {
+            if (Files.exists(rotatedPath)) {
+                try (FileChannel rotated = FileChannel.open(rotatedPath, StandardOpenOption.READ,
+                                                            StandardOpenOption.WRITE)) {
+                    readRecords(rotated, rotatedPath, 0, true);
+                }
+            }
+            readPosition = readRecords(channel, path, 0, true);
+        } finally {
+            lock.release();
+        }
+        
+        running = true;
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    
+    // Appends one record and returns only once it has reached the disk.
+    // Returns false if another process committed the same pair first.
+    // Not synchronized: concurrent callers share the next group commit.
+    public boolean appendRegistration(String studentId, String subjectId, int enrollment) throws IOException {
+        return commit(new PendingWrite(new ByteBuffer[] {encodeRegistration(studentId, subjectId, enrollment)},
+                                       new String[] {studentId}, new String[] {subjectId}))[0];
+    }
+    
+    // Appends a batch of records as part of one group commit;
+    // enrollments[i] is the enrollment count recorded for requests.get(i).
+    // Returns, per request, whether it was committed or lost to another process.
+    public boolean[] appendRegistrations(List<RegistrationRequest> requests, int[] enrollments) throws IOException {
+        ByteBuffer[] records = new ByteBuffer[requests.size()];
+        String[] studentIds = new String[requests.size()];
+        String[] subjectIds = new String[requests.size()];
+        for (int i = 0; i < records.length; i++) {
+            RegistrationRequest request = requests.get(i);
+            records[i] = encodeRegistration(request.getStudentId(), request.getSubjectId(), enrollments[i]);
+            studentIds[i] = request.getStudentId();
+            subjectIds[i] = request.getSubjectId();
+        }
+        return commit(new PendingWrite(records, studentIds, subjectIds));
+    }
+    
+    // Queues the records for the writer thread and waits until they are forced to disk
+    private boolean[] commit(PendingWrite write) throws IOException {
+        synchronized (queueLock) {
+            if (!running) {
+                throw new IOException("Journal is closed");
+            }
+            pending.add(write);
+            queueLock.notifyAll();
+        }
+        
+        // Wait without giving up on interrupt: once queued the record may still be
+        // written, and the caller must not roll back a registration that is durable
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return write.done.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void writeLoop() {
+        while (true) {
+            synchronized (queueLock) {
+                while (pending.isEmpty() && running) {
+                    try {
+                        queueLock.wait();
+                    } catch (InterruptedException e) {
+                        // only close() stops the writer
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return; // closed and drained
+                }
+            }
+            
+            // Give concurrent callers the commit window to join this group
+            if (commitWindowNanos > 0) {
+                LockSupport.parkNanos(commitWindowNanos);
+            }
+            
+            List<PendingWrite> group;
+            synchronized (queueLock) {
+                group = pending;
+                pending = new ArrayList<>();
+            }
+            writeGroup(group);
+        }
+    }
+    
+    // Whatever goes wrong, every write in the group is completed, since its
+    // caller waits for it. Exceptions fail only this group and the writer goes
+    // on with the next one; after an Error the journal stops taking records,
+    // so later registrations fail at once instead of waiting for a dead writer.
+    private synchronized void writeGroup(List<PendingWrite> group) {
+        long start = metrics.start();
+        long bytes = 0;
+        try {
+            FileLock lock = lockAndCatchUp(false);
+            try {
+                List<ByteBuffer> buffers = new ArrayList<>();
+                for (PendingWrite write : group) {
+                    for (int i = 0; i < write.records.length; i++) {
+                        write.committed[i] = !conflictCheck.conflicts(write.studentIds[i], write.subjectIds[i]);
+                        if (write.committed[i]) {
+                            buffers.add(write.records[i]);
+                            bytes += write.records[i].remaining();
+                        }
+                    }
+                }
+                
+                ByteBuffer[] gather = buffers.toArray(new ByteBuffer[0]);
+                channel.position(readPosition);
+                try {
+                    for (long remaining = bytes; remaining > 0; ) {
+                        remaining -= channel.write(gather);
+                    }
+                    if (fsync) {
+                        channel.force(false);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    discardFailedGroup(e);
+                    throw e;
+                }
+                readPosition += bytes;
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(group, e);
+            return;
+        } catch (Error e) {
+            stopTaking(e);
+            fail(group, e);
+            throw e;
+        }
+        for (PendingWrite write : group) {
+            write.done.complete(write.committed);
+        }
+        metrics.stopWrite(RegistrationMetrics.Operation.JOURNAL_COMMIT, start, bytes);
+    }
+    
+    // Part of a failed group may already be in the file. Its callers are told
+    // it failed, so it must not be read back as committed: not after a crash,
+    // not by another process catching up, and not as a torn tail behind a
+    // shorter next group. Called under the file lock. If the file cannot be
+    // cut back, appending after the stray bytes is no longer safe.
+    private void discardFailedGroup(Exception cause) {
+        try {
+            channel.truncate(readPosition);
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            cause.addSuppressed(e);
+            System.err.println("Error discarding failed journal write, journal stopped: " + e.getMessage());
+            stopTaking(cause);
+        }
+    }
+    
+    // Later registrations then fail at once instead of waiting for a writer
+    // that will not write
+    private void stopTaking(Throwable cause) {
+        synchronized (queueLock) {
+            running = false;
+            fail(pending, cause);
+            pending = new ArrayList<>();
+        }
+    }
+    
+    private static void fail(List<PendingWrite> writes, Throwable cause) {
+        for (PendingWrite write : writes) {
+            write.done.completeExceptionally(cause);
+        }
+    }
+    
+    // Takes the file lock and applies the records other processes appended
+    // since the last look, following the file if another process rotated it
+    // out. Only an exclusive lock may repair the file, since a shared lock can
+    // be held by several readers at once.
+    private FileLock lockAndCatchUp(boolean shared) throws IOException {
+        while (true) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, shared);
+            try {
+                readPosition = readRecords(channel, path, readPosition, !shared);
+                if (isActiveFile()) {
+                    return lock;
+                }
+            } catch (IOException | RuntimeException e) {
+                lock.release();
+                throw e;
+            }
+            // Everything in the rotated file has been read; continue in the new one
+            lock.release();
+            channel.close();
+            openActive();
+        }
+    }
+    
+    // Reads records that follow other processes' appends, e.g. periodically
+    // from a process that is mostly idle
+    public synchronized void refresh() throws IOException {
+        lockAndCatchUp(true).release();
+    }
+    
+    private void openActive() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        readPosition = 0;
+    }
+    
+    // False once another process has renamed the file this one has open
+    private boolean isActiveFile() throws IOException {
+        try {
+            Object key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            return key == null || key.equals(fileKey);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+    
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+    
+    // Moves the active segment aside and starts a fresh one. Returns false if a
+    // previous rotated segment has not been discarded yet, in which case the
+    // active segment is kept as is. Every record in the rotated segment,
+    // including other processes' records, has been applied when this returns.
+    public synchronized boolean rotate() throws IOException {
+        FileLock lock = lockAndCatchUp(false);
+        try {
+            if (Files.exists(rotatedPath)) {
+                return false;
+            }
+            Files.move(path, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+            try (FileChannel fresh = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                writeHeader(fresh);
+            }
+        } finally {
+            lock.release();
+        }
+        channel.close();
+        openActive();
+        return true;
+    }
+    
+    // Called once the records of the rotated segment are covered by a snapshot
+    public synchronized void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath);
+    }
+    
+    // Flushes queued records, stops the writer thread and closes the file
+    @Override
+    public void close() throws IOException {
+        synchronized (queueLock) {
+            running = false;
+            queueLock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+    
+    // Applies the valid records from position on and returns the position after
+    // the last one; position 0 means the header has not been checked yet. With
+    // repair set, a missing header is written and a torn last record (left by
+    // a writer that crashed) is cut off so new appends are not hidden behind it.
+    private long readRecords(FileChannel ch, Path segment, long position, boolean repair) throws IOException {
+        long size = ch.size();
+        if (position < HEADER_SIZE) {
+            if (size < HEADER_SIZE) {
+                // New or never fully initialised journal
+                if (!repair) {
+                    return 0;
+                }
+                ch.truncate(0);
+                writeHeader(ch);
+                return HEADER_SIZE;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!readFully(ch, header, 0) || header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Not a registration journal: " + segment);
+            }
+            position = HEADER_SIZE;
+        }
+        
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        ByteBuffer payload = ByteBuffer.allocate(MAX_RECORD_SIZE);
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= size) {
+            recordHeader.clear();
+            if (!readFully(ch, recordHeader, position)) break;
+            int length = recordHeader.getInt(0);
+            int checksum = recordHeader.getInt(4);
+            if (length <= 0 || length > MAX_RECORD_SIZE
+                    || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            
+            payload.clear().limit(length);
+            if (!readFully(ch, payload, position + RECORD_HEADER_SIZE)) break;
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) break;
+            
+            payload.flip();
+            if (payload.get() == TYPE_REGISTRATION) {
+                String studentId = readString(payload);
+                String subjectId = readString(payload);
+                handler.onRegistration(studentId, subjectId, payload.getInt());
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        
+        if (position < size && repair) {
+            System.err.println("Discarding " + (size - position) + " bytes of torn journal tail in " + segment);
+            ch.truncate(position);
+            ch.force(true);
+        }
+        return position;
+    }
+    
+    // Encoded records waiting for the next group commit
+    private static final class PendingWrite {
+        final ByteBuffer[] records;
+        final String[] studentIds;
+        final String[] subjectIds;
+        final boolean[] committed;
+        final CompletableFuture<boolean[]> done = new CompletableFuture<>();
+        
+        PendingWrite(ByteBuffer[] records, String[] studentIds, String[] subjectIds) {
+            this.records = records;
+            this.studentIds = studentIds;
+            this.subjectIds = subjectIds;
+            this.committed = new boolean[records.length];
+        }
+    }
+    
+    private static ByteBuffer encodeRegistration(String studentId, String subjectId, int enrollment) {
+        byte[] student = studentId.getBytes(StandardCharsets.UTF_8);
+        byte[] subject = subjectId.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 2 + student.length + 2 + subject.length + 4;
+        
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length).putInt(0);
+        record.put(TYPE_REGISTRATION);
+        record.putShort((short) student.length).put(student);
+        record.putShort((short) subject.length).put(subject);
+        record.putInt(enrollment);
+        
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+    
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+    
+    private static void writeHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        while (header.hasRemaining()) {
+            ch.write(header, HEADER_SIZE - header.remaining());
+        }
+        ch.force(true);
+    }
+    
+    private static boolean readFully(FileChannel ch, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = ch.read(buffer, position + buffer.position());
+            if (read < 0) return false;
+        }
+        return true;
+    }
+}
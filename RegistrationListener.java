@@ -0,0 +1,17 @@
+// RegistrationListener.java - Callbacks for registrations and data reloads in the model
+public interface RegistrationListener {
+    // Called on the registering thread once the registration is durable and
+    // indexed; implementations must be quick and thread-safe
+    void registrationAdded(String studentId, String subjectId);
+    
+    // Called when a seat taken in this process is given back without a
+    // registration: the save failed, or another process had already registered
+    // the same pair. The subject's count went down, so it may have a seat again.
+    default void seatReleased(String subjectId) {
+    }
+    
+    // Called on the file watcher thread after students or subjects were
+    // reloaded from changed data files; views showing them should reload
+    default void catalogueReloaded() {
+    }
+}
@@ -0,0 +1,172 @@
+// RegistrationLoadClient.java - Local load generator for RegistrationServer
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Simulates students going through the enrollment flow at the same time:
+// each simulated user logs in, then with the session token from the login
+// loads the profile, lists available subjects and registers for a random
+// one, repeatedly. Student and subject IDs are read from the local CSV files.
+// Prints p50/p99 latency per operation and overall requests per second.
+//
+// Usage: java RegistrationLoadClient [baseUrl] [users] [roundsPerUser]
+public class RegistrationLoadClient {
+    private static final String[] OPERATIONS = {"login", "profile", "available", "register"};
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+    
+    private final HttpClient client;
+    private final String baseUrl;
+    private final List<String> studentIds;
+    private final List<String> subjectIds;
+    
+    public RegistrationLoadClient(HttpClient client, String baseUrl, List<String> studentIds, List<String> subjectIds) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.studentIds = studentIds;
+        this.subjectIds = subjectIds;
+    }
+    
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        
+        List<String> studentIds = readIds(Registration.STUDENTS_CSV);
+        List<String> subjectIds = readIds(Registration.SUBJECTS_CSV);
+        if (studentIds.isEmpty() || subjectIds.isEmpty()) {
+            System.err.println("No student or subject IDs found in the CSV files");
+            return;
+        }
+        
+        ExecutorService executor = RegistrationServer.newPerRequestExecutor();
+        HttpClient client = HttpClient.newBuilder().executor(executor).build();
+        RegistrationLoadClient loadClient = new RegistrationLoadClient(client, baseUrl, studentIds, subjectIds);
+        
+        System.out.println("Running " + users + " users x " + rounds + " rounds against " + baseUrl);
+        long start = System.nanoTime();
+        List<Future<long[][]>> results = new ArrayList<>();
+        for (int user = 0; user < users; user++) {
+            long seed = user;
+            results.add(executor.submit(() -> loadClient.runUser(new Random(seed), rounds)));
+        }
+        
+        // latencies[operation][user * rounds + round], -1 for failed requests
+        long[][] latencies = new long[OPERATIONS.length][users * rounds];
+        for (int user = 0; user < users; user++) {
+            long[][] userLatencies = results.get(user).get();
+            for (int op = 0; op < OPERATIONS.length; op++) {
+                System.arraycopy(userLatencies[op], 0, latencies[op], user * rounds, rounds);
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+        
+        report(latencies, elapsedNanos);
+    }
+    
+    // Runs the enrollment flow rounds times for one random student and returns
+    // the latency of every request in nanoseconds, per operation
+    long[][] runUser(Random random, int rounds) {
+        long[][] latencies = new long[OPERATIONS.length][rounds];
+        for (int round = 0; round < rounds; round++) {
+            String studentId = studentIds.get(random.nextInt(studentIds.size()));
+            String subjectId = subjectIds.get(random.nextInt(subjectIds.size()));
+            String studentUrl = baseUrl + "/api/students/" + studentId;
+            
+            String[] token = new String[1];
+            latencies[0][round] = time(post(baseUrl + "/api/login", "studentId=" + studentId, null),
+                                       body -> token[0] = tokenFrom(body));
+            latencies[1][round] = time(get(studentUrl, token[0]), null);
+            latencies[2][round] = time(get(studentUrl + "/available", token[0]), null);
+            latencies[3][round] = time(post(studentUrl + "/register", "subjectId=" + subjectId, token[0]), null);
+        }
+        return latencies;
+    }
+    
+    // Any HTTP response counts, since refusals such as FULL are valid answers;
+    // only transport failures are reported as errors (-1). The body goes to
+    // onBody when given, and is discarded otherwise.
+    private long time(HttpRequest request, Consumer<String> onBody) {
+        long start = System.nanoTime();
+        try {
+            if (onBody == null) {
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                return System.nanoTime() - start;
+            }
+            String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+            long elapsed = System.nanoTime() - start;
+            onBody.accept(body);
+            return elapsed;
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+    
+    // The session token from a login response, or null if the login was refused
+    private static String tokenFrom(String body) {
+        Matcher token = TOKEN.matcher(body);
+        return token.find() ? token.group(1) : null;
+    }
+    
+    private static HttpRequest get(String url, String token) {
+        return withToken(HttpRequest.newBuilder(URI.create(url)), token).GET().build();
+    }
+    
+    private static HttpRequest post(String url, String form, String token) {
+        return withToken(HttpRequest.newBuilder(URI.create(url)), token)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form))
+            .build();
+    }
+    
+    // Without a token the server answers 401, which still counts as a response
+    private static HttpRequest.Builder withToken(HttpRequest.Builder request, String token) {
+        return token == null ? request : request.header("Authorization", "Bearer " + token);
+    }
+    
+    private static void report(long[][] latencies, long elapsedNanos) {
+        long total = 0;
+        System.out.printf("%-10s %8s %7s %10s %10s %10s%n", "operation", "requests", "errors", "p50 ms", "p99 ms", "max ms");
+        for (int op = 0; op < OPERATIONS.length; op++) {
+            long[] sorted = Arrays.stream(latencies[op]).filter(latency -> latency >= 0).sorted().toArray();
+            int errors = latencies[op].length - sorted.length;
+            total += latencies[op].length;
+            if (sorted.length == 0) {
+                System.out.printf("%-10s %8d %7d %10s %10s %10s%n", OPERATIONS[op], latencies[op].length, errors, "-", "-", "-");
+                continue;
+            }
+            System.out.printf("%-10s %8d %7d %10.2f %10.2f %10.2f%n", OPERATIONS[op], latencies[op].length, errors,
+                              percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6,
+                              sorted[sorted.length - 1] / 1e6);
+        }
+        System.out.printf("%d requests in %.2f s: %.0f requests/sec%n",
+                          total, elapsedNanos / 1e9, total * 1e9 / elapsedNanos);
+    }
+    
+    // Nearest-rank percentile of a sorted array
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+    
+    private static List<String> readIds(String fileName) throws IOException {
+        List<String> ids = new ArrayList<>();
+        new CsvReader().read(Paths.get(fileName), true, row -> ids.add(row.get(0)));
+        return ids;
+    }
+}
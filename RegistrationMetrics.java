@@ -0,0 +1,218 @@
+// RegistrationMetrics.java - Counters and latency histograms for the registration model
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// One instance per Registration. Timed code calls start() and stop(); when
+// metrics are disabled (-Dregistration.metrics=false) start() does not read
+// the clock and every method returns after one final-field check.
+// Exposed through JMX as registration:type=RegistrationMetrics and, with
+// -Dregistration.metricsDumpSeconds=<n>, printed to stdout every n seconds.
+public class RegistrationMetrics implements RegistrationMetricsMBean {
+    public enum Operation {
+        LOAD,               // whole startup load: snapshot or CSV files, then journal replay
+        REGISTER,           // single registration including the durable journal append
+        REGISTER_BATCH,     // registerStudents call
+        EVALUATE_ALL,       // one student against the whole catalogue
+        JOURNAL_COMMIT,     // one group write and fsync
+        COMPACTION,         // rewrite of the CSV files and snapshot
+        SNAPSHOT_WRITE,     // snapshot written after a CSV load
+        PROFILE_VIEW,       // console profile screen
+        REGISTRATION_PAGE   // console registration screen
+    }
+    
+    private static final String OBJECT_NAME = "registration:type=RegistrationMetrics";
+    
+    private final boolean enabled;
+    private final LatencyHistogram[] latencies;
+    private final LongAdder[] outcomes;
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder ioNanos = new LongAdder();
+    
+    public RegistrationMetrics(boolean enabled) {
+        this.enabled = enabled;
+        latencies = new LatencyHistogram[enabled ? Operation.values().length : 0];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        outcomes = new LongAdder[enabled ? RegistrationStatus.values().length : 0];
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+    
+    // Enabled unless -Dregistration.metrics=false
+    public static RegistrationMetrics fromSystemProperties() {
+        return new RegistrationMetrics(Boolean.parseBoolean(System.getProperty("registration.metrics", "true")));
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    // Returns a start timestamp for stop(), or 0 without reading the clock when disabled
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+    
+    public void stop(Operation operation, long start) {
+        if (enabled) {
+            latencies[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+    
+    public void recordOutcome(RegistrationStatus status) {
+        if (enabled) {
+            outcomes[status.ordinal()].increment();
+        }
+    }
+    
+    // Like stop, for operations that read or write files; the whole operation
+    // time counts as I/O time
+    public void stopRead(Operation operation, long start, long bytes) {
+        if (enabled) {
+            long nanos = System.nanoTime() - start;
+            latencies[operation.ordinal()].record(nanos);
+            bytesRead.add(bytes);
+            ioNanos.add(nanos);
+        }
+    }
+    
+    public void stopWrite(Operation operation, long start, long bytes) {
+        if (enabled) {
+            long nanos = System.nanoTime() - start;
+            latencies[operation.ordinal()].record(nanos);
+            bytesWritten.add(bytes);
+            ioNanos.add(nanos);
+        }
+    }
+    
+    public long getOutcomeCount(RegistrationStatus status) {
+        return enabled ? outcomes[status.ordinal()].sum() : 0;
+    }
+    
+    public LatencyHistogram getLatency(Operation operation) {
+        return enabled ? latencies[operation.ordinal()] : new LatencyHistogram();
+    }
+    
+    // Registers this instance with the platform MBean server, replacing the
+    // metrics of an earlier Registration in the same JVM
+    public void registerMBean() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+    
+    public void scheduleDump(ScheduledExecutorService executor, long periodSeconds) {
+        if (enabled && periodSeconds > 0) {
+            executor.scheduleAtFixedRate(() -> System.out.print(getReport()),
+                                         periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        }
+    }
+    
+    @Override
+    public String getReport() {
+        if (!enabled) {
+            return "Registration metrics disabled\n";
+        }
+        StringBuilder report = new StringBuilder("=== Registration metrics ===\n");
+        report.append(String.format("%-18s %10s %10s %10s %10s %10s%n",
+                                    "operation", "count", "mean us", "p50 us", "p99 us", "max us"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%-18s %10d %10.1f %10.1f %10.1f %10.1f%n", operation, histogram.getCount(),
+                                        histogram.getMean() / 1e3, histogram.getPercentile(50) / 1e3,
+                                        histogram.getPercentile(99) / 1e3, histogram.getMax() / 1e3));
+        }
+        report.append("Outcomes:");
+        for (RegistrationStatus status : RegistrationStatus.values()) {
+            long count = outcomes[status.ordinal()].sum();
+            if (count > 0) {
+                report.append(' ').append(status).append('=').append(count);
+            }
+        }
+        report.append(String.format("%nFile I/O: %d bytes read, %d bytes written, %d ms%n",
+                                    bytesRead.sum(), bytesWritten.sum(), getIoMillis()));
+        return report.toString();
+    }
+    
+    @Override
+    public long getRegisterCount() {
+        return getLatency(Operation.REGISTER).getCount();
+    }
+    
+    @Override
+    public long getRegisterP50Micros() {
+        return getLatency(Operation.REGISTER).getPercentile(50) / 1000;
+    }
+    
+    @Override
+    public long getRegisterP99Micros() {
+        return getLatency(Operation.REGISTER).getPercentile(99) / 1000;
+    }
+    
+    @Override
+    public long getRegisterMaxMicros() {
+        return getLatency(Operation.REGISTER).getMax() / 1000;
+    }
+    
+    // Every outcome other than OK, including SAVE_FAILED
+    @Override
+    public long getRejectedCount() {
+        long rejected = 0;
+        for (RegistrationStatus status : RegistrationStatus.values()) {
+            if (status != RegistrationStatus.OK) {
+                rejected += getOutcomeCount(status);
+            }
+        }
+        return rejected;
+    }
+    
+    @Override
+    public long getJournalCommitCount() {
+        return getLatency(Operation.JOURNAL_COMMIT).getCount();
+    }
+    
+    @Override
+    public long getJournalCommitP99Micros() {
+        return getLatency(Operation.JOURNAL_COMMIT).getPercentile(99) / 1000;
+    }
+    
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+    
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+    
+    @Override
+    public long getIoMillis() {
+        return ioNanos.sum() / 1_000_000;
+    }
+    
+    @Override
+    public long getLoadMillis() {
+        return getLatency(Operation.LOAD).getMax() / 1_000_000;
+    }
+}
@@ -0,0 +1,17 @@
+// RegistrationMetricsMBean.java - JMX view of RegistrationMetrics
+public interface RegistrationMetricsMBean {
+    long getRegisterCount();
+    long getRegisterP50Micros();
+    long getRegisterP99Micros();
+    long getRegisterMaxMicros();
+    long getRejectedCount();
+    long getJournalCommitCount();
+    long getJournalCommitP99Micros();
+    long getBytesRead();
+    long getBytesWritten();
+    long getIoMillis();
+    long getLoadMillis();
+    
+    // Full text report, as printed by the periodic dump
+    String getReport();
+}
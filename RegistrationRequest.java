@@ -0,0 +1,19 @@
+// RegistrationRequest.java - One (student, subject) pair for batch registration
+public class RegistrationRequest {
+    private String studentId;
+    private String subjectId;
+    
+    public RegistrationRequest(String studentId, String subjectId) {
+        this.studentId = studentId;
+        this.subjectId = subjectId;
+    }
+    
+    // Getters
+    public String getStudentId() { return studentId; }
+    public String getSubjectId() { return subjectId; }
+    
+    @Override
+    public String toString() {
+        return studentId + "," + subjectId;
+    }
+}
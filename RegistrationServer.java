@@ -0,0 +1,350 @@
+// RegistrationServer.java - Embedded HTTP service exposing the registration model as JSON
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Endpoints (parameters as query string or form-encoded POST body):
+//   POST /api/login                          studentId; returns a session token
+//   GET  /api/students/{id}                  profile and registered subjects
+//   GET  /api/students/{id}/available        every unregistered subject with its status
+//   POST /api/students/{id}/register         subjectId
+// The student endpoints need the token from logging in as that student, sent
+// as "Authorization: Bearer <token>"; a session ends after it has been idle
+// for a while. The server listens on the loopback address unless
+// -Dregistration.bindAddress names another one (0.0.0.0 for every interface).
+// Every request runs on its own thread; the model is already safe for
+// concurrent registrations, so handlers call it directly.
+public class RegistrationServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final String STUDENTS_PATH = "/api/students/";
+    private static final String BEARER = "Bearer ";
+    private static final int TOKEN_BYTES = 32;
+    // How long an unused session stays valid; override with -Dregistration.sessionMinutes=<minutes>
+    private static final long SESSION_IDLE_MILLIS = Long.getLong("registration.sessionMinutes", 30) * 60_000;
+    
+    private final Registration registration;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>(); // by token
+    private final AtomicLong nextExpiry = new AtomicLong();
+    
+    // A logged-in student; lastUsed moves on with every request
+    private static final class Session {
+        final String studentId;
+        volatile long lastUsed;
+        
+        Session(String studentId, long now) {
+            this.studentId = studentId;
+            this.lastUsed = now;
+        }
+        
+        boolean isExpired(long now) {
+            return now - lastUsed > SESSION_IDLE_MILLIS;
+        }
+    }
+    
+    public RegistrationServer(Registration registration, int port) throws IOException {
+        this.registration = registration;
+        this.executor = newPerRequestExecutor();
+        String bindAddress = System.getProperty("registration.bindAddress");
+        InetAddress address = bindAddress == null ? InetAddress.getLoopbackAddress()
+                                                  : InetAddress.getByName(bindAddress);
+        this.server = HttpServer.create(new InetSocketAddress(address, port), 1024);
+        server.createContext("/api/login", this::handleLogin);
+        server.createContext(STUDENTS_PATH, this::handleStudents);
+        server.setExecutor(executor);
+    }
+    
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RegistrationServer server = new RegistrationServer(new Registration(), port);
+        server.start();
+        System.out.println("Registration service listening on " + server.getAddress());
+    }
+    
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+    
+    // One virtual thread per request where the JDK has them (21+), otherwise a
+    // cached pool, which also gives each concurrent request its own thread
+    static ExecutorService newPerRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "registration-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    
+    private void handleLogin(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+            String studentId = readParameters(exchange).get("studentId");
+            LoginStatus status = registration.checkLogin(studentId);
+            if (status != LoginStatus.OK) {
+                sendError(exchange, loginErrorCode(status), status.getMessage());
+                return;
+            }
+            Student student = registration.getStudent(studentId);
+            
+            StringBuilder json = new StringBuilder();
+            json.append("{\"studentId\":").append(quote(studentId))
+                .append(",\"name\":").append(quote(student.getFullName()))
+                .append(",\"token\":").append(quote(startSession(studentId))).append('}');
+            send(exchange, 200, json.toString());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        }
+    }
+    
+    private String startSession(String studentId) {
+        long now = System.currentTimeMillis();
+        expireSessions(now);
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(studentId, now));
+        return token;
+    }
+    
+    // Drops idle sessions at most every half session lifetime, so logins
+    // that are never used do not pile up
+    private void expireSessions(long now) {
+        long due = nextExpiry.get();
+        if (now >= due && nextExpiry.compareAndSet(due, now + SESSION_IDLE_MILLIS / 2)) {
+            sessions.values().removeIf(session -> session.isExpired(now));
+        }
+    }
+    
+    // True if the request carries a live token issued to studentId;
+    // otherwise the error response has been sent
+    private boolean authenticate(HttpExchange exchange, String studentId) throws IOException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        Session session = header != null && header.startsWith(BEARER)
+                        ? sessions.get(header.substring(BEARER.length()).trim()) : null;
+        long now = System.currentTimeMillis();
+        if (session == null || session.isExpired(now)) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            sendError(exchange, 401, "Log in first");
+            return false;
+        }
+        if (!session.studentId.equals(studentId)) {
+            sendError(exchange, 403, "Logged in as another student");
+            return false;
+        }
+        session.lastUsed = now;
+        return true;
+    }
+    
+    private static int loginErrorCode(LoginStatus status) {
+        switch (status) {
+            case UNKNOWN_STUDENT:
+                return 404;
+            case UNDERAGE:
+                return 403;
+            default:
+                return 400;
+        }
+    }
+    
+    private void handleStudents(HttpExchange exchange) throws IOException {
+        try {
+            // {id}, {id}/available or {id}/register
+            String[] parts = exchange.getRequestURI().getPath().substring(STUDENTS_PATH.length()).split("/");
+            String studentId = parts[0];
+            String action = parts.length > 1 ? parts[1] : "";
+            String method = exchange.getRequestMethod();
+            if (!authenticate(exchange, studentId)) {
+                return;
+            }
+            
+            if (action.isEmpty() && "GET".equals(method)) {
+                sendProfile(exchange, studentId);
+            } else if (action.equals("available") && "GET".equals(method)) {
+                sendAvailable(exchange, studentId);
+            } else if (action.equals("register") && "POST".equals(method)) {
+                register(exchange, studentId, readParameters(exchange).get("subjectId"));
+            } else {
+                sendError(exchange, 404, "Unknown endpoint");
+            }
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        }
+    }
+    
+    private void sendProfile(HttpExchange exchange, String studentId) throws IOException {
+        Student student = registration.getStudent(studentId);
+        if (student == null) {
+            sendError(exchange, 404, "Student ID not found in system");
+            return;
+        }
+        
+        List<Subject> registered = registration.getRegisteredSubjects(studentId);
+        int totalCredits = 0;
+        StringBuilder json = new StringBuilder();
+        json.append("{\"studentId\":").append(quote(studentId))
+            .append(",\"name\":").append(quote(student.getFullName()))
+            .append(",\"school\":").append(quote(student.getCurrentSchool()))
+            .append(",\"subjects\":[");
+        for (int i = 0; i < registered.size(); i++) {
+            Subject subject = registered.get(i);
+            totalCredits += subject.getCredits();
+            if (i > 0) json.append(',');
+            appendSubject(json, subject);
+            json.append('}');
+        }
+        json.append("],\"totalCredits\":").append(totalCredits).append('}');
+        send(exchange, 200, json.toString());
+    }
+    
+    private void sendAvailable(HttpExchange exchange, String studentId) throws IOException {
+        if (registration.getStudent(studentId) == null) {
+            sendError(exchange, 404, "Student ID not found in system");
+            return;
+        }
+        
+        StringBuilder json = new StringBuilder("[");
+        registration.evaluateAll(studentId, (subject, status) -> {
+            if (status == RegistrationStatus.ALREADY_REGISTERED) {
+                return;
+            }
+            if (json.length() > 1) json.append(',');
+            appendSubject(json, subject);
+            json.append(",\"status\":").append(quote(status.name())).append('}');
+        });
+        json.append(']');
+        send(exchange, 200, json.toString());
+    }
+    
+    private void register(HttpExchange exchange, String studentId, String subjectId) throws IOException {
+        if (subjectId == null) {
+            sendError(exchange, 400, "Missing subjectId");
+            return;
+        }
+        
+        RegistrationStatus status = registration.register(studentId, subjectId);
+        int code;
+        switch (status) {
+            case OK:
+                code = 200;
+                break;
+            case UNKNOWN_STUDENT:
+            case UNKNOWN_SUBJECT:
+                code = 404;
+                break;
+            case SAVE_FAILED:
+                code = 500;
+                break;
+            default:
+                code = 409; // a registration rule refused it
+                break;
+        }
+        send(exchange, code, "{\"status\":" + quote(status.name())
+                           + ",\"message\":" + quote(status.getMessage()) + "}");
+    }
+    
+    // Leaves the object open so callers can add fields
+    private void appendSubject(StringBuilder json, Subject subject) {
+        json.append("{\"subjectId\":").append(quote(subject.getSubjectId()))
+            .append(",\"name\":").append(quote(subject.getSubjectName()))
+            .append(",\"credits\":").append(subject.getCredits())
+            .append(",\"instructor\":").append(quote(subject.getInstructor()))
+            .append(",\"prerequisite\":").append(subject.hasPrerequisite() ? quote(subject.getPrerequisiteSubjectId()) : "null")
+            .append(",\"maxCapacity\":").append(subject.getMaxCapacity())
+            .append(",\"currentEnrollment\":").append(registration.getEnrollment(subject.getSubjectId()));
+    }
+    
+    // Query string parameters, plus form-encoded body parameters for POST
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+        if ("POST".equals(exchange.getRequestMethod())) {
+            try (InputStream in = exchange.getRequestBody()) {
+                parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), parameters);
+            }
+        }
+        return parameters;
+    }
+    
+    private static void parseForm(String form, Map<String, String> parameters) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int split = pair.indexOf('=');
+            if (split > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, split), StandardCharsets.UTF_8),
+                               URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+    
+    private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        send(exchange, code, "{\"error\":" + quote(message) + "}");
+    }
+    
+    private static void send(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':  quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,239 @@
+// RegistrationSet.java - Set of (studentId, subjectId) pairs stored as packed longs
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+// Student and subject IDs are fixed-width 8-digit numbers, so a pair packs into
+// one long (studentId * 10^8 + subjectId). The pairs live in open-addressing
+// long tables split into lock-striped segments, so lookups allocate nothing
+// and concurrent registrations rarely contend on the same lock. Pairs whose
+// IDs are not 8 digits fall back to an ordinary string set.
+public class RegistrationSet {
+    private static final int ID_DIGITS = 8;
+    private static final long ID_RADIX = 100_000_000L;
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+    private static final long EMPTY = -1L; // packed keys are never negative
+    
+    // Receives each pair when iterating the set
+    public interface PairConsumer {
+        void accept(String studentId, String subjectId);
+    }
+    
+    private final Segment[] segments;
+    private final Set<String> irregular; // studentId_subjectId for non-numeric IDs
+    
+    public RegistrationSet() {
+        segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+        irregular = new HashSet<>();
+    }
+    
+    // Returns false if the pair was already present
+    public boolean add(String studentId, String subjectId) {
+        long key = pack(studentId, subjectId);
+        if (key == EMPTY) {
+            synchronized (irregular) {
+                return irregular.add(studentId + "_" + subjectId);
+            }
+        }
+        long hash = mix(key);
+        return segmentFor(hash).add(key, hash);
+    }
+    
+    public boolean contains(String studentId, String subjectId) {
+        long key = pack(studentId, subjectId);
+        if (key == EMPTY) {
+            synchronized (irregular) {
+                return irregular.contains(studentId + "_" + subjectId);
+            }
+        }
+        long hash = mix(key);
+        return segmentFor(hash).contains(key, hash);
+    }
+    
+    public boolean remove(String studentId, String subjectId) {
+        long key = pack(studentId, subjectId);
+        if (key == EMPTY) {
+            synchronized (irregular) {
+                return irregular.remove(studentId + "_" + subjectId);
+            }
+        }
+        long hash = mix(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+    
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        synchronized (irregular) {
+            size += irregular.size();
+        }
+        return size;
+    }
+    
+    // Visits every pair; each segment is locked only while it is being visited
+    public void forEach(PairConsumer consumer) {
+        for (Segment segment : segments) {
+            long[] keys;
+            synchronized (segment) {
+                keys = segment.table.clone();
+            }
+            for (long key : keys) {
+                if (key != EMPTY) {
+                    consumer.accept(formatId(key / ID_RADIX), formatId(key % ID_RADIX));
+                }
+            }
+        }
+        String[] pairs;
+        synchronized (irregular) {
+            pairs = irregular.toArray(new String[0]);
+        }
+        for (String pair : pairs) {
+            int split = pair.indexOf('_');
+            consumer.accept(pair.substring(0, split), pair.substring(split + 1));
+        }
+    }
+    
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+    
+    // Packs two 8-digit IDs into one long, or returns EMPTY if either is irregular
+    private static long pack(String studentId, String subjectId) {
+        long student = parseId(studentId);
+        long subject = parseId(subjectId);
+        if (student < 0 || subject < 0) {
+            return EMPTY;
+        }
+        return student * ID_RADIX + subject;
+    }
+    
+    private static long parseId(String id) {
+        if (id == null || id.length() != ID_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < ID_DIGITS; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    
+    private static String formatId(long id) {
+        char[] digits = new char[ID_DIGITS];
+        for (int i = ID_DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + id % 10);
+            id /= 10;
+        }
+        return new String(digits);
+    }
+    
+    // MurmurHash3 finalizer; spreads sequential IDs over segments and slots
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+    
+    // Linear-probing table guarded by its own monitor
+    private static final class Segment {
+        long[] table;
+        int size;
+        
+        Segment() {
+            table = newTable(INITIAL_SEGMENT_CAPACITY);
+        }
+        
+        synchronized boolean add(long key, long hash) {
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != EMPTY) {
+                if (table[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = key;
+            size++;
+            if (size * 4 > table.length * 3) {
+                resize();
+            }
+            return true;
+        }
+        
+        synchronized boolean contains(long key, long hash) {
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != EMPTY) {
+                if (table[slot] == key) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+        
+        synchronized boolean remove(long key, long hash) {
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != key) {
+                if (table[slot] == EMPTY) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            
+            // Backward-shift deletion keeps probe chains intact without tombstones
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (table[next] != EMPTY) {
+                int home = (int) mix(table[next]) & mask;
+                // Move the entry into the hole unless its home lies cyclically in (hole, next]
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            table[hole] = EMPTY;
+            size--;
+            return true;
+        }
+        
+        private void resize() {
+            long[] old = table;
+            table = newTable(old.length * 2);
+            int mask = table.length - 1;
+            for (long key : old) {
+                if (key != EMPTY) {
+                    int slot = (int) mix(key) & mask;
+                    while (table[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = key;
+                }
+            }
+        }
+        
+        private static long[] newTable(int capacity) {
+            long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+    }
+}
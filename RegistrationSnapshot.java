@@ -0,0 +1,230 @@
+// RegistrationSnapshot.java - Compact binary image of students, subjects and registrations
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+// Layout (big-endian):
+//   int magic "RSNP", int version
+//   string table: int count, then strings (titles, schools, instructors)
+//   students:      int count, then id, title ref, first name, last name,
+//                  int birth epoch day, school ref, email
+//   subjects:      int count, then id, name, int credits, instructor ref,
+//                  prerequisite id, int max capacity, int current enrollment
+//   registrations: student id, subject id pairs, ended by -2
+// A string is an int byte length followed by UTF-8 bytes. An id is the
+// 8-digit number as an int, or -1 followed by a string for irregular ids;
+// a missing prerequisite is written as -2.
+public class RegistrationSnapshot {
+    private static final int MAGIC = 0x52534E50; // "RSNP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int NO_ID = -2;
+    private static final int IRREGULAR_ID = -1;
+    
+    // Receives the decoded records in file order
+    public interface Handler {
+        void onStudent(Student student);
+        void onSubject(Subject subject, int currentEnrollment);
+        void onRegistration(String studentId, String subjectId);
+    }
+    
+    // Writes to a temporary file and atomically renames it over the target;
+    // enrollment gives the current count of each subject by its position in
+    // subjects, and registrations the subject ids of each student
+    public static void write(Path target, Collection<Student> students, List<Subject> subjects,
+                             IntUnaryOperator enrollment,
+                             Map<String, ? extends Collection<String>> registrations) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (Student student : students) {
+            intern(strings, student.getTitle());
+            intern(strings, student.getCurrentSchool());
+        }
+        for (Subject subject : subjects) {
+            intern(strings, subject.getInstructor());
+        }
+        
+        Path temp = AtomicFiles.tempFor(target);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            
+            out.writeInt(strings.size());
+            for (String value : strings.keySet()) {
+                writeString(out, value);
+            }
+            
+            out.writeInt(students.size());
+            for (Student student : students) {
+                writeId(out, student.getStudentId());
+                out.writeInt(strings.get(student.getTitle()));
+                writeString(out, student.getFirstName());
+                writeString(out, student.getLastName());
+                out.writeInt((int) student.getBirthDate().toEpochDay());
+                out.writeInt(strings.get(student.getCurrentSchool()));
+                writeString(out, student.getEmail());
+            }
+            
+            out.writeInt(subjects.size());
+            for (int i = 0; i < subjects.size(); i++) {
+                Subject subject = subjects.get(i);
+                writeId(out, subject.getSubjectId());
+                writeString(out, subject.getSubjectName());
+                out.writeInt(subject.getCredits());
+                out.writeInt(strings.get(subject.getInstructor()));
+                if (subject.hasPrerequisite()) {
+                    writeId(out, subject.getPrerequisiteSubjectId());
+                } else {
+                    out.writeInt(NO_ID);
+                }
+                out.writeInt(subject.getMaxCapacity());
+                out.writeInt(enrollment.applyAsInt(i));
+            }
+            
+            // The map may grow while it is written, so the pairs end with a
+            // marker instead of starting with a count
+            for (Map.Entry<String, ? extends Collection<String>> entry : registrations.entrySet()) {
+                for (String subjectId : entry.getValue()) {
+                    writeId(out, entry.getKey());
+                    writeId(out, subjectId);
+                }
+            }
+            out.writeInt(NO_ID);
+        }
+        AtomicFiles.commit(temp, target);
+    }
+    
+    // True if the snapshot exists and was written after every source file changed
+    public static boolean isNewerThan(Path snapshot, Path... sources) {
+        try {
+            if (!Files.exists(snapshot)) {
+                return false;
+            }
+            FileTime snapshotTime = Files.getLastModifiedTime(snapshot);
+            for (Path source : sources) {
+                if (Files.exists(source) && Files.getLastModifiedTime(source).compareTo(snapshotTime) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    // Memory-maps the snapshot and decodes it. Throws IOException if the file
+    // is not a snapshot of the current format version.
+    public static void read(Path snapshot, Handler handler) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format: " + snapshot);
+            }
+            byte[] scratch = new byte[256];
+            
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer, scratch);
+            }
+            
+            int studentCount = buffer.getInt();
+            for (int i = 0; i < studentCount; i++) {
+                String studentId = readId(buffer, scratch);
+                String title = strings[buffer.getInt()];
+                String firstName = readString(buffer, scratch);
+                String lastName = readString(buffer, scratch);
+                LocalDate birthDate = LocalDate.ofEpochDay(buffer.getInt());
+                String school = strings[buffer.getInt()];
+                String email = readString(buffer, scratch);
+                handler.onStudent(new Student(studentId, title, firstName, lastName, birthDate, school, email));
+            }
+            
+            int subjectCount = buffer.getInt();
+            for (int i = 0; i < subjectCount; i++) {
+                String subjectId = readId(buffer, scratch);
+                String name = readString(buffer, scratch);
+                int credits = buffer.getInt();
+                String instructor = strings[buffer.getInt()];
+                String prerequisite = readId(buffer, scratch);
+                int maxCapacity = buffer.getInt();
+                int currentEnrollment = buffer.getInt();
+                handler.onSubject(new Subject(subjectId, name, credits, instructor, prerequisite, maxCapacity),
+                                  currentEnrollment);
+            }
+            
+            while (buffer.getInt(buffer.position()) != NO_ID) {
+                String studentId = readId(buffer, scratch);
+                String subjectId = readId(buffer, scratch);
+                handler.onRegistration(studentId, subjectId);
+            }
+        } catch (RuntimeException e) {
+            // Truncated or corrupt file: buffer underflow, bad string ref or date
+            throw new IOException("Corrupt snapshot " + snapshot + ": " + e, e);
+        }
+    }
+    
+    private static void intern(Map<String, Integer> strings, String value) {
+        strings.putIfAbsent(value, strings.size());
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(MappedByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+    
+    private static void writeId(DataOutputStream out, String id) throws IOException {
+        int value = parseId(id);
+        out.writeInt(value);
+        if (value == IRREGULAR_ID) {
+            writeString(out, id);
+        }
+    }
+    
+    private static String readId(MappedByteBuffer buffer, byte[] scratch) {
+        int value = buffer.getInt();
+        if (value == NO_ID) {
+            return null;
+        }
+        if (value == IRREGULAR_ID) {
+            return readString(buffer, scratch);
+        }
+        char[] digits = new char[8];
+        for (int i = 7; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+    
+    // Fixed-width 8-digit ids fit in an int; anything else is stored as a string
+    private static int parseId(String id) {
+        if (id == null || id.length() != 8) {
+            return IRREGULAR_ID;
+        }
+        int value = 0;
+        for (int i = 0; i < 8; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return IRREGULAR_ID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
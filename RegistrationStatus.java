@@ -0,0 +1,21 @@
+// RegistrationStatus.java - Outcome of a registration check or attempt
+public enum RegistrationStatus {
+    OK("Available"),                                     // may register / registered
+    UNKNOWN_STUDENT("Student ID not found"),             // student ID not in the system
+    UNKNOWN_SUBJECT("Subject ID not found"),             // subject ID not in the catalogue
+    UNDERAGE("Age requirement not met"),                 // student is younger than 15
+    ALREADY_REGISTERED("Already registered"),            // pair already registered (or repeated in a batch)
+    PREREQ_MISSING("Prerequisite not completed"),        // prerequisite chain not satisfied
+    FULL("Subject is full"),                             // subject has reached maxCapacity
+    SAVE_FAILED("Registration could not be saved");      // passed every rule but the journal write failed
+    
+    private final String message;
+    
+    RegistrationStatus(String message) {
+        this.message = message;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+}
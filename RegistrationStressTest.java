@@ -0,0 +1,244 @@
+// RegistrationStressTest.java - Hammers one subject from many threads and checks its seat count
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs against the data files in the current directory (for example a set
+// written by DataGenerator) and adds registrations to them. Every thread
+// tries the same eligible students for one subject in its own order, so
+// threads race both for the last seats and for the same pairs, while another
+// thread keeps compacting the journal until half the seats are taken.
+// Afterwards the subject must not be over capacity, and its enrollment, its
+// roster and the number of successful registrations must all have grown by
+// the same amount. The data files may start with enrollment counts that
+// differ from the roster, so only the growth is compared. Then a fresh JVM
+// loads the files the way a restart would, and every subject must come back
+// with the same difference between enrollment and roster as before the run
+// (none, for files written by DataGenerator) and within its capacity. Exits
+// with status 1 if a check fails.
+//
+// Usage: java RegistrationStressTest [threads] [subjectId] [seed]
+public class RegistrationStressTest {
+    private static final int MIN_CANDIDATES = 1_000; // students tried even when few seats are left
+    private static final String REPORT = "--report"; // runs as the restarted process
+    private static final String REPORT_PREFIX = "subject,";
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(REPORT)) {
+            report();
+            return;
+        }
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        String subjectId = args.length > 1 ? args[1] : null;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        
+        if (!Files.exists(Paths.get(Registration.STUDENTS_CSV))) {
+            System.err.println("No " + Registration.STUDENTS_CSV + " in the current directory;"
+                             + " run DataGenerator first and start the test in its output directory");
+            System.exit(1);
+        }
+        Registration registration = new Registration();
+        Subject subject = subjectId != null ? registration.getSubject(subjectId) : pickSubject(registration);
+        if (subject == null) {
+            System.err.println(subjectId != null ? "Unknown subject " + subjectId
+                                                 : "No subject with a capacity limit and no prerequisite");
+            System.exit(1);
+        }
+        
+        List<String> candidates = findCandidates(registration, subject, seed);
+        int enrollmentBefore = registration.getEnrollment(subject.getSubjectId());
+        int rosterBefore = registration.getRegisteredStudents(subject.getSubjectId()).size();
+        Map<String, Integer> offsets = new HashMap<>();
+        for (Subject each : registration.getAllSubjects()) {
+            offsets.put(each.getSubjectId(), registration.getEnrollment(each.getSubjectId())
+                                           - registration.getRegisteredStudents(each.getSubjectId()).size());
+        }
+        System.out.printf("Subject %s: capacity %d, enrollment %d, roster %d; %d candidates, %d threads%n",
+                          subject.getSubjectId(), subject.getMaxCapacity(), enrollmentBefore, rosterBefore,
+                          candidates.size(), threads);
+        
+        LongAdder[] outcomes = new LongAdder[RegistrationStatus.values().length];
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            List<String> order = new ArrayList<>(candidates);
+            Collections.shuffle(order, new Random(seed * 1_000_003 + t));
+            tasks.add(() -> {
+                for (String studentId : order) {
+                    outcomes[registration.register(studentId, subject.getSubjectId()).ordinal()].increment();
+                }
+                return null;
+            });
+        }
+        
+        // Compaction stops halfway through the seats, so the snapshot the
+        // restart loads was written while registrations were still in flight
+        int seats = subject.getMaxCapacity() == -1 ? candidates.size()
+                  : Math.min(subject.getMaxCapacity() - enrollmentBefore, candidates.size());
+        LongAdder registeredSoFar = outcomes[RegistrationStatus.OK.ordinal()];
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread compactor = new Thread(() -> {
+            while (running.get() && registeredSoFar.sum() < seats / 2) {
+                registration.compact();
+            }
+        }, "stress-compactor");
+        ExecutorService clients = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            compactor.start();
+            for (Future<Void> done : clients.invokeAll(tasks)) {
+                done.get(); // rethrows a client failure
+            }
+        } finally {
+            clients.shutdown();
+            running.set(false);
+            compactor.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        
+        long registered = outcomes[RegistrationStatus.OK.ordinal()].sum();
+        int enrollment = registration.getEnrollment(subject.getSubjectId());
+        int roster = registration.getRegisteredStudents(subject.getSubjectId()).size();
+        System.out.printf("%d attempts in %.1f s%n", (long) candidates.size() * threads, elapsed / 1e9);
+        for (RegistrationStatus status : RegistrationStatus.values()) {
+            long count = outcomes[status.ordinal()].sum();
+            if (count > 0) {
+                System.out.printf("  %-20s %10d%n", status, count);
+            }
+        }
+        System.out.printf("Enrollment %d -> %d, roster %d -> %d%n", enrollmentBefore, enrollment, rosterBefore, roster);
+        
+        boolean failed = false;
+        if (subject.getMaxCapacity() != -1 && enrollment > subject.getMaxCapacity()) {
+            System.err.println("FAILED: enrollment " + enrollment + " exceeds capacity " + subject.getMaxCapacity());
+            failed = true;
+        }
+        if (enrollment - enrollmentBefore != roster - rosterBefore) {
+            System.err.println("FAILED: enrollment grew by " + (enrollment - enrollmentBefore)
+                             + " but the roster by " + (roster - rosterBefore));
+            failed = true;
+        }
+        if (roster - rosterBefore != registered) {
+            System.err.println("FAILED: " + registered + " registrations succeeded but the roster grew by "
+                             + (roster - rosterBefore));
+            failed = true;
+        }
+        if (!checkRestart(registration, offsets)) {
+            failed = true;
+        }
+        System.out.println(failed ? "Stress test failed" : "Stress test passed");
+        System.exit(failed ? 1 : 0);
+    }
+    
+    // Loads the data in a new JVM, as the next start would, and compares
+    // every subject it reports with the offsets taken before the run
+    private static boolean checkRestart(Registration registration, Map<String, Integer> offsets)
+            throws IOException, InterruptedException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process restarted = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+                                               RegistrationStressTest.class.getName(), REPORT)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        int checked = 0;
+        boolean passed = true;
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(restarted.getInputStream()))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (!line.startsWith(REPORT_PREFIX)) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                String subjectId = fields[1];
+                int enrollment = Integer.parseInt(fields[2]);
+                int roster = Integer.parseInt(fields[3]);
+                Subject subject = registration.getSubject(subjectId);
+                Integer offset = offsets.get(subjectId);
+                checked++;
+                if (offset != null && enrollment - roster != offset) {
+                    System.err.println("FAILED after restart: " + subjectId + " has enrollment " + enrollment
+                                     + " and roster " + roster + ", expected a difference of " + offset);
+                    passed = false;
+                }
+                if (subject != null && subject.getMaxCapacity() != -1 && enrollment > subject.getMaxCapacity()) {
+                    System.err.println("FAILED after restart: " + subjectId + " has enrollment " + enrollment
+                                     + " over capacity " + subject.getMaxCapacity());
+                    passed = false;
+                }
+            }
+        }
+        if (restarted.waitFor() != 0 || checked == 0) {
+            System.err.println("FAILED: the restarted process did not report its subjects");
+            return false;
+        }
+        System.out.println("Restart: " + checked + " subjects checked");
+        return passed;
+    }
+    
+    // The restarted side: one line per subject with its enrollment and roster
+    private static void report() {
+        Registration registration = new Registration();
+        for (Subject subject : registration.getAllSubjects()) {
+            String subjectId = subject.getSubjectId();
+            System.out.println(REPORT_PREFIX + subjectId + "," + registration.getEnrollment(subjectId) + ","
+                             + registration.getRegisteredStudents(subjectId).size());
+        }
+        System.exit(0);
+    }
+    
+    // The limited subject without a prerequisite that has the most seats left,
+    // so that as many registrations as possible race for it
+    private static Subject pickSubject(Registration registration) {
+        Subject best = null;
+        int bestSeats = -1;
+        for (Subject subject : registration.getAllSubjects()) {
+            if (subject.getMaxCapacity() == -1 || subject.hasPrerequisite()) {
+                continue;
+            }
+            int seats = subject.getMaxCapacity() - registration.getEnrollment(subject.getSubjectId());
+            if (seats > bestSeats) {
+                best = subject;
+                bestSeats = seats;
+            }
+        }
+        return best;
+    }
+    
+    // Students who could register now, apart from the seat limit: about twice
+    // as many as there are seats left, so the subject fills up
+    private static List<String> findCandidates(Registration registration, Subject subject, long seed)
+            throws IOException {
+        List<String> studentIds = new ArrayList<>();
+        new CsvReader().read(Paths.get(Registration.STUDENTS_CSV), true, row -> studentIds.add(row.get(0)));
+        Collections.shuffle(studentIds, new Random(seed));
+        
+        int seats = subject.getMaxCapacity() == -1 ? MIN_CANDIDATES
+                  : subject.getMaxCapacity() - registration.getEnrollment(subject.getSubjectId());
+        int wanted = Math.max(2 * seats, MIN_CANDIDATES);
+        List<String> candidates = new ArrayList<>();
+        for (String studentId : studentIds) {
+            if (candidates.size() == wanted) {
+                break;
+            }
+            RegistrationStatus status = registration.evaluate(studentId, subject.getSubjectId());
+            if (status == RegistrationStatus.OK || status == RegistrationStatus.FULL) {
+                candidates.add(studentId);
+            }
+        }
+        return candidates;
+    }
+}
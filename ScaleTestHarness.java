@@ -0,0 +1,168 @@
+// ScaleTestHarness.java - Replays a simulated day of registration traffic against the model
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs against the data files in the current directory (for example a set
+// written by DataGenerator). The day is compressed: each simulated hour sends
+// its share of the traffic as fast as the model accepts it, from several
+// client threads at once. Each registration attempt comes with profile and
+// availability reads, students are picked uniformly and subjects by Zipf
+// popularity, so popular subjects fill up during the day. After every hour
+// and at the end it prints throughput, registration outcomes, heap use and
+// the size of the data files.
+//
+// Usage: java ScaleTestHarness [attempts] [threads] [seed] [zipfExponent]
+public class ScaleTestHarness {
+    // Share of the day's traffic per hour: quiet nights, morning and evening peaks
+    private static final int[] HOURLY_WEIGHTS = {1, 1, 1, 1, 1, 2, 4, 8, 14, 18, 16, 12,
+                                                 10, 10, 9, 8, 8, 10, 14, 16, 12, 7, 4, 2};
+    private static final int READS_PER_ATTEMPT = 2; // one profile view and one availability listing
+    private static final String[] DATA_FILES = {Registration.STUDENTS_CSV, Registration.SUBJECTS_CSV,
+                                                "registrations.csv", "registrations.journal",
+                                                "registrations.journal.old", "registrations.snapshot",
+                                                "subjects.enrollment"};
+    
+    private final Registration registration;
+    private final List<String> studentIds;
+    private final List<String> subjectIds;
+    private final ZipfDistribution popularity;
+    private final LongAdder[] outcomes = new LongAdder[RegistrationStatus.values().length];
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private long peakHeap;
+    
+    public ScaleTestHarness(Registration registration, List<String> studentIds, double zipfExponent, long seed) {
+        this.registration = registration;
+        this.studentIds = studentIds;
+        this.subjectIds = new ArrayList<>();
+        for (Subject subject : registration.getAllSubjects()) {
+            subjectIds.add(subject.getSubjectId());
+        }
+        this.popularity = new ZipfDistribution(subjectIds.size(), zipfExponent, new Random(seed));
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        long attempts = args.length > 0 ? DataGenerator.parseCount(args[0]) : 100_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        double exponent = args.length > 3 ? Double.parseDouble(args[3]) : 1.0;
+        
+        if (!Files.exists(Paths.get(Registration.STUDENTS_CSV))) {
+            System.err.println("No " + Registration.STUDENTS_CSV + " in the current directory;"
+                             + " run DataGenerator first and start the harness in its output directory");
+            return;
+        }
+        long filesBefore = dataFileBytes();
+        
+        Registration registration = new Registration();
+        List<String> studentIds = new ArrayList<>();
+        new CsvReader().read(Paths.get(Registration.STUDENTS_CSV), true, row -> studentIds.add(row.get(0)));
+        
+        ScaleTestHarness harness = new ScaleTestHarness(registration, studentIds, exponent, seed);
+        harness.runDay(attempts, threads, seed);
+        
+        long filesAfter = dataFileBytes();
+        System.out.printf("Data files grew from %.1f MB to %.1f MB (%+.1f MB)%n",
+                          filesBefore / 1e6, filesAfter / 1e6, (filesAfter - filesBefore) / 1e6);
+        System.exit(0);
+    }
+    
+    public void runDay(long attempts, int threads, long seed) throws Exception {
+        int totalWeight = 0;
+        for (int weight : HOURLY_WEIGHTS) {
+            totalWeight += weight;
+        }
+        
+        System.out.printf("Simulating %d registration attempts over 24 hours with %d client threads%n", attempts, threads);
+        System.out.printf("%4s %10s %10s %12s %10s %10s %10s%n",
+                          "hour", "attempts", "ok", "ops/s", "heap MB", "journal MB", "files MB");
+        ExecutorService clients = Executors.newFixedThreadPool(threads);
+        long dayOps = 0;
+        long dayNanos = 0;
+        try {
+            for (int hour = 0; hour < HOURLY_WEIGHTS.length; hour++) {
+                long hourAttempts = attempts * HOURLY_WEIGHTS[hour] / totalWeight;
+                long okBefore = outcomes[RegistrationStatus.OK.ordinal()].sum();
+                
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    long share = hourAttempts / threads + (t < hourAttempts % threads ? 1 : 0);
+                    Random random = new Random(seed * 1_000_003 + hour * 1_000 + t);
+                    tasks.add(() -> {
+                        runClient(share, random);
+                        return null;
+                    });
+                }
+                
+                long start = System.nanoTime();
+                for (Future<Void> done : clients.invokeAll(tasks)) {
+                    done.get(); // rethrows a client failure
+                }
+                long elapsed = System.nanoTime() - start;
+                
+                long ops = hourAttempts * (1 + READS_PER_ATTEMPT);
+                dayOps += ops;
+                dayNanos += elapsed;
+                long heap = memory.getHeapMemoryUsage().getUsed();
+                peakHeap = Math.max(peakHeap, heap);
+                System.out.printf("%4d %10d %10d %12.0f %10.1f %10.1f %10.1f%n", hour, hourAttempts,
+                                  outcomes[RegistrationStatus.OK.ordinal()].sum() - okBefore,
+                                  elapsed == 0 ? 0 : ops * 1e9 / elapsed, heap / 1e6,
+                                  fileBytes("registrations.journal") / 1e6, dataFileBytes() / 1e6);
+            }
+        } finally {
+            clients.shutdown();
+        }
+        
+        System.out.printf("Day total: %d operations in %.1f s, %.0f ops/s, peak heap %.1f MB%n",
+                          dayOps, dayNanos / 1e9, dayNanos == 0 ? 0 : dayOps * 1e9 / dayNanos, peakHeap / 1e6);
+        for (RegistrationStatus status : RegistrationStatus.values()) {
+            long count = outcomes[status.ordinal()].sum();
+            if (count > 0) {
+                System.out.printf("  %-20s %10d%n", status, count);
+            }
+        }
+    }
+    
+    // One simulated client: view the profile, list available subjects, then try
+    // to register for a subject chosen by popularity
+    private void runClient(long attempts, Random random) {
+        for (long i = 0; i < attempts; i++) {
+            String studentId = studentIds.get(random.nextInt(studentIds.size()));
+            registration.getRegisteredSubjects(studentId);
+            registration.evaluateAll(studentId, (subject, status) -> { });
+            
+            String subjectId = subjectIds.get(popularity.next(random));
+            outcomes[registration.register(studentId, subjectId).ordinal()].increment();
+        }
+    }
+    
+    private static long dataFileBytes() throws IOException {
+        long total = 0;
+        for (String file : DATA_FILES) {
+            total += fileBytes(file);
+        }
+        return total;
+    }
+    
+    // 0 for missing files; compaction may remove the rotated journal at any time
+    private static long fileBytes(String file) throws IOException {
+        try {
+            return Files.size(Paths.get(file));
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 // Student.java - Model
 import java.time.LocalDate;
-import java.time.Period;
 
 public class Student {
     private String studentId;
@@ -10,6 +9,7 @@ public class Student {
     private LocalDate birthDate;
     private String currentSchool;
     private String email;
+    private int eligibleFromDay; // epoch day of the 15th birthday
     
     public Student(String studentId, String title, String firstName, String lastName, 
                    LocalDate birthDate, String currentSchool, String email) {
@@ -20,6 +20,7 @@ public class Student {
         this.birthDate = birthDate;
         this.currentSchool = currentSchool;
         this.email = email;
+        this.eligibleFromDay = computeEligibleFromDay(birthDate);
     }
     
     // Getters
@@ -33,7 +34,26 @@ public class Student {
     
     // Business Rule: Student must be at least 15 years old
     public boolean isAgeValid() {
-        return Period.between(birthDate, LocalDate.now()).getYears() >= 15;
+        return CurrentDay.get() >= eligibleFromDay;
+    }
+    
+    // First day on which Period.between(birthDate, day).getYears() >= 15. For a
+    // 29 February birthday in a non-leap year plusYears lands on 28 February,
+    // which Period still counts as one day short, so move to 1 March.
+    private static int computeEligibleFromDay(LocalDate birthDate) {
+        LocalDate eligible = birthDate.plusYears(15);
+        if (eligible.getDayOfMonth() != birthDate.getDayOfMonth()) {
+            eligible = eligible.plusDays(1);
+        }
+        return (int) eligible.toEpochDay();
+    }
+    
+    // True if every field matches, e.g. when a reloaded row is unchanged
+    public boolean hasSameDetails(Student other) {
+        return studentId.equals(other.studentId) && title.equals(other.title)
+            && firstName.equals(other.firstName) && lastName.equals(other.lastName)
+            && birthDate.equals(other.birthDate) && currentSchool.equals(other.currentSchool)
+            && email.equals(other.email);
     }
     
     public String getFullName() {
@@ -1,16 +1,19 @@
 // StudentController.java - Controller for Student operations
+import java.util.List;
 import java.util.Scanner;
 
 public class StudentController {
     private Registration registration;
     private Scanner scanner;
     
-    public StudentController() {
-        this.registration = new Registration();
+    public StudentController(Registration registration) {
+        this.registration = registration;
         this.scanner = new Scanner(System.in);
     }
     
     public void showStudentProfile(String studentId) {
+        RegistrationMetrics metrics = registration.getMetrics();
+        long start = metrics.start();
         Student student = registration.getStudent(studentId);
         if (student == null) {
             System.out.println("Student not found");
@@ -24,16 +27,14 @@ public class StudentController {
         
         // Show registered subjects
         System.out.println("\n=== Registered Subjects ===");
-        boolean hasRegistrations = false;
-        for (Subject subject : registration.getAllSubjects()) {
-            if (registration.isStudentRegistered(studentId, subject.getSubjectId())) {
-                System.out.println("- " + subject.getSubjectName() + " (" + subject.getSubjectId() + ")");
-                hasRegistrations = true;
-            }
+        List<Subject> registeredSubjects = registration.getRegisteredSubjects(studentId);
+        for (Subject subject : registeredSubjects) {
+            System.out.println("- " + subject.getSubjectName() + " (" + subject.getSubjectId() + ")");
         }
         
-        if (!hasRegistrations) {
+        if (registeredSubjects.isEmpty()) {
             System.out.println("No subjects registered yet");
         }
+        metrics.stop(RegistrationMetrics.Operation.PROFILE_VIEW, start);
     }
 }
\ No newline at end of file
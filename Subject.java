@@ -1,22 +1,33 @@
 // Subject.java - Model
+import java.util.Objects;
+
+// Immutable: the current enrollment is kept per catalogue ordinal in
+// EnrollmentCounters, so a Subject can be shared by any number of readers
+// and catalogue versions
 public class Subject {
-    private String subjectId;
-    private String subjectName;
-    private int credits;
-    private String instructor;
-    private String prerequisiteSubjectId;
-    private int maxCapacity; // -1 if no maximum limit
-    private int currentEnrollment;
+    private final String subjectId;
+    private final String subjectName;
+    private final int credits;
+    private final String instructor;
+    private final String prerequisiteSubjectId;
+    private final int maxCapacity; // -1 if no maximum limit
     
     public Subject(String subjectId, String subjectName, int credits, String instructor,
-                   String prerequisiteSubjectId, int maxCapacity, int currentEnrollment) {
+                   String prerequisiteSubjectId, int maxCapacity) {
         this.subjectId = subjectId;
         this.subjectName = subjectName;
         this.credits = credits;
         this.instructor = instructor;
         this.prerequisiteSubjectId = prerequisiteSubjectId;
         this.maxCapacity = maxCapacity;
-        this.currentEnrollment = currentEnrollment;
+    }
+    
+    // True if every field is the same, e.g. when a reloaded row is unchanged
+    public boolean hasSameDefinition(Subject other) {
+        return subjectId.equals(other.subjectId) && subjectName.equals(other.subjectName)
+            && credits == other.credits && instructor.equals(other.instructor)
+            && Objects.equals(prerequisiteSubjectId, other.prerequisiteSubjectId)
+            && maxCapacity == other.maxCapacity;
     }
     
     // Getters
@@ -26,15 +37,9 @@ public class Subject {
     public String getInstructor() { return instructor; }
     public String getPrerequisiteSubjectId() { return prerequisiteSubjectId; }
     public int getMaxCapacity() { return maxCapacity; }
-    public int getCurrentEnrollment() { return currentEnrollment; }
-    
-    // Setters
-    public void setCurrentEnrollment(int currentEnrollment) {
-        this.currentEnrollment = currentEnrollment;
-    }
     
     // Business Rules
-    public boolean canRegister() {
+    public boolean hasSeat(int currentEnrollment) {
         if (maxCapacity == -1) {
             return true; // No maximum limit
         }
@@ -45,13 +50,7 @@ public class Subject {
         return prerequisiteSubjectId != null && !prerequisiteSubjectId.isEmpty();
     }
     
-    public void incrementEnrollment() {
-        if (canRegister()) {
-            currentEnrollment++;
-        }
-    }
-    
-    public String getCapacityInfo() {
+    public String getCapacityInfo(int currentEnrollment) {
         if (maxCapacity == -1) {
             return String.format("Enrolled: %d students (Unlimited)", currentEnrollment);
         }
@@ -60,7 +59,8 @@ public class Subject {
     
     @Override
     public String toString() {
-        return String.format("Subject ID: %s\nSubject Name: %s\nCredits: %d\nInstructor: %s\n%s",
-                           subjectId, subjectName, credits, instructor, getCapacityInfo());
+        return String.format("Subject ID: %s\nSubject Name: %s\nCredits: %d\nInstructor: %s\nCapacity: %s",
+                           subjectId, subjectName, credits, instructor,
+                           maxCapacity == -1 ? "Unlimited" : String.valueOf(maxCapacity));
     }
-}
\ No newline at end of file
+}
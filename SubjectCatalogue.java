@@ -0,0 +1,82 @@
+// SubjectCatalogue.java - Immutable, versioned snapshot of the subject catalogue
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// A reload publishes a new catalogue instead of changing this one, so readers
+// can look subjects up and iterate them without locks and always see one
+// consistent version, prerequisite graph included. Subjects keep their
+// position (ordinal) in every later version, since new subjects are only
+// added at the end; that is what lets enrollment counts live apart from the
+// catalogue, in EnrollmentCounters indexed by ordinal. Ordinals belong to
+// this process only: another process that loaded or reloaded the files in a
+// different order numbers the subjects differently, so nothing shared
+// between processes may be keyed by ordinal.
+public class SubjectCatalogue {
+    private final long version;
+    private final List<Subject> subjects; // by ordinal
+    private final Map<String, Subject> byId;
+    private final PrerequisiteGraph prerequisites;
+    
+    public SubjectCatalogue(Collection<Subject> subjects) {
+        this(1, subjects);
+    }
+    
+    private SubjectCatalogue(long version, Collection<Subject> subjects) {
+        this.version = version;
+        this.subjects = Collections.unmodifiableList(new ArrayList<>(subjects));
+        this.byId = new HashMap<>(subjects.size() * 2);
+        for (Subject subject : this.subjects) {
+            byId.put(subject.getSubjectId(), subject);
+        }
+        this.prerequisites = new PrerequisiteGraph(this.subjects);
+    }
+    
+    // The next version; it must keep every subject of this one at the same
+    // ordinal, possibly redefined, and may add subjects after them
+    public SubjectCatalogue withSubjects(List<Subject> updated) {
+        if (updated.size() < subjects.size()) {
+            throw new IllegalArgumentException("A catalogue version cannot drop subjects");
+        }
+        for (int i = 0; i < subjects.size(); i++) {
+            if (!subjects.get(i).getSubjectId().equals(updated.get(i).getSubjectId())) {
+                throw new IllegalArgumentException("Subject " + subjects.get(i).getSubjectId()
+                                                 + " would move from ordinal " + i);
+            }
+        }
+        return new SubjectCatalogue(version + 1, updated);
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public int size() {
+        return subjects.size();
+    }
+    
+    public Subject get(int ordinal) {
+        return subjects.get(ordinal);
+    }
+    
+    public Subject get(String subjectId) {
+        return byId.get(subjectId);
+    }
+    
+    // -1 for a subject not in this version
+    public int ordinalOf(String subjectId) {
+        return prerequisites.ordinalOf(subjectId);
+    }
+    
+    // Unmodifiable, in ordinal order
+    public List<Subject> getSubjects() {
+        return subjects;
+    }
+    
+    public PrerequisiteGraph getPrerequisites() {
+        return prerequisites;
+    }
+}
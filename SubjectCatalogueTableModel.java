@@ -0,0 +1,206 @@
+// SubjectCatalogueTableModel.java - Lazy, sortable and filterable view of the whole subject catalogue
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import javax.swing.table.AbstractTableModel;
+
+// Holds one catalogue version's Subject references, whose positions are their
+// ordinals for the enrollment lookup, and an int[] of the rows currently
+// shown; cell values are computed only when JTable asks for them, which it
+// does for the visible viewport alone. Sorting uses one precomputed index
+// array per column, built the first time that column is sorted, and filtering
+// is a single pass over that array, so neither allocates per row.
+// Must only be used on the event dispatch thread.
+public class SubjectCatalogueTableModel extends AbstractTableModel {
+    public static final int ENROLLMENT_COLUMN = 6;
+    public static final int AVAILABLE_COLUMN = 7;
+    private static final String[] COLUMNS = {"Subject ID", "Subject Name", "Credits", "Instructor",
+                                             "Prerequisite", "Max Capacity", "Current Enrollment", "Available Slots"};
+    
+    private final IntUnaryOperator enrollment; // current count by ordinal
+    private Subject[] subjects;
+    private long catalogueVersion;
+    private int[][] sortedBy = new int[COLUMNS.length][]; // cached ascending orders of static columns
+    private int[] view;
+    private int viewSize;
+    
+    private int sortColumn = -1; // -1 keeps catalogue order
+    private boolean descending;
+    private String instructorFilter; // null for any
+    private int creditsFilter = -1;  // -1 for any
+    private boolean seatsOnly;
+    
+    public SubjectCatalogueTableModel(SubjectCatalogue catalogue, IntUnaryOperator enrollment) {
+        this.enrollment = enrollment;
+        setCatalogue(catalogue);
+    }
+    
+    // Shows a reloaded catalogue, keeping the sort and filters; the cached
+    // orders belonged to the old version
+    public void setCatalogue(SubjectCatalogue catalogue) {
+        catalogueVersion = catalogue.getVersion();
+        subjects = catalogue.getSubjects().toArray(new Subject[0]);
+        sortedBy = new int[COLUMNS.length][];
+        view = new int[subjects.length];
+        applyView();
+    }
+    
+    public long getCatalogueVersion() {
+        return catalogueVersion;
+    }
+    
+    public int getTotalCount() {
+        return subjects.length;
+    }
+    
+    // Values for the filter choices, in sorted order
+    public String[] getInstructors() {
+        TreeSet<String> instructors = new TreeSet<>();
+        for (Subject subject : subjects) {
+            instructors.add(subject.getInstructor());
+        }
+        return instructors.toArray(new String[0]);
+    }
+    
+    public int[] getCreditValues() {
+        return Arrays.stream(subjects).mapToInt(Subject::getCredits).distinct().sorted().toArray();
+    }
+    
+    public void setFilter(String instructor, int credits, boolean seatsOnly) {
+        this.instructorFilter = instructor;
+        this.creditsFilter = credits;
+        this.seatsOnly = seatsOnly;
+        applyView();
+    }
+    
+    // Sorts by the column, or reverses the order if it is already sorted by it
+    public void toggleSort(int column) {
+        descending = column == sortColumn && !descending;
+        sortColumn = column;
+        applyView();
+    }
+    
+    // Enrollment changes while the view is open; re-applies the seats filter and
+    // enrollment sorts, and repaints the visible rows
+    public void refresh() {
+        applyView();
+    }
+    
+    private void applyView() {
+        int[] order = sortColumn < 0 ? null : ascendingOrder(sortColumn);
+        int count = 0;
+        for (int i = 0; i < subjects.length; i++) {
+            int position = order == null ? i : order[descending ? subjects.length - 1 - i : i];
+            if (matches(position)) {
+                view[count++] = position;
+            }
+        }
+        viewSize = count;
+        fireTableDataChanged();
+    }
+    
+    private boolean matches(int position) {
+        Subject subject = subjects[position];
+        if (instructorFilter != null && !instructorFilter.equals(subject.getInstructor())) {
+            return false;
+        }
+        if (creditsFilter != -1 && subject.getCredits() != creditsFilter) {
+            return false;
+        }
+        return !seatsOnly || subject.hasSeat(enrollment.applyAsInt(position));
+    }
+    
+    private int[] ascendingOrder(int column) {
+        switch (column) {
+            // Enrollment moves, so these orders are rebuilt each time
+            case ENROLLMENT_COLUMN: return sortByInt(enrollment);
+            case AVAILABLE_COLUMN: return sortByInt(this::availableSlots);
+            default: break;
+        }
+        if (sortedBy[column] == null) {
+            switch (column) {
+                case 0: sortedBy[column] = sortByString(Subject::getSubjectId); break;
+                case 1: sortedBy[column] = sortByString(Subject::getSubjectName); break;
+                case 2: sortedBy[column] = sortByInt(position -> subjects[position].getCredits()); break;
+                case 3: sortedBy[column] = sortByString(Subject::getInstructor); break;
+                case 4: sortedBy[column] = sortByString(subject -> prerequisiteOf(subject)); break;
+                default: sortedBy[column] = sortByInt(position -> subjects[position].getMaxCapacity() == -1
+                                                                  ? Integer.MAX_VALUE : subjects[position].getMaxCapacity());
+            }
+        }
+        return sortedBy[column];
+    }
+    
+    // Packs key and position into one long so a primitive sort keeps equal keys
+    // in catalogue order
+    private int[] sortByInt(IntUnaryOperator keyOfPosition) {
+        long[] packed = new long[subjects.length];
+        for (int i = 0; i < subjects.length; i++) {
+            packed[i] = ((long) keyOfPosition.applyAsInt(i) << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[subjects.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+    
+    private int[] sortByString(Function<Subject, String> key) {
+        String[] keys = new String[subjects.length];
+        Integer[] positions = new Integer[subjects.length];
+        for (int i = 0; i < positions.length; i++) {
+            keys[i] = key.apply(subjects[i]);
+            positions[i] = i;
+        }
+        Arrays.sort(positions, (x, y) -> keys[x].compareTo(keys[y]));
+        int[] order = new int[positions.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = positions[i];
+        }
+        return order;
+    }
+    
+    private static String prerequisiteOf(Subject subject) {
+        return subject.hasPrerequisite() ? subject.getPrerequisiteSubjectId() : "None";
+    }
+    
+    // Unlimited subjects sort after every limited one
+    private int availableSlots(int position) {
+        Subject subject = subjects[position];
+        return subject.getMaxCapacity() == -1 ? Integer.MAX_VALUE
+             : subject.getMaxCapacity() - enrollment.applyAsInt(position);
+    }
+    
+    @Override
+    public int getRowCount() {
+        return viewSize;
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        int position = view[row];
+        Subject subject = subjects[position];
+        switch (column) {
+            case 0: return subject.getSubjectId();
+            case 1: return subject.getSubjectName();
+            case 2: return subject.getCredits();
+            case 3: return subject.getInstructor();
+            case 4: return prerequisiteOf(subject);
+            case 5: return subject.getMaxCapacity() == -1 ? "Unlimited" : String.valueOf(subject.getMaxCapacity());
+            case ENROLLMENT_COLUMN: return enrollment.applyAsInt(position);
+            default: return subject.getMaxCapacity() == -1 ? "Unlimited" : String.valueOf(availableSlots(position));
+        }
+    }
+}
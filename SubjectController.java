@@ -3,10 +3,12 @@ import java.util.Scanner;
 
 public class SubjectController {
     private Registration registration;
+    private StudentController studentController;
     private Scanner scanner;
     
-    public SubjectController() {
-        this.registration = new Registration();
+    public SubjectController(Registration registration, StudentController studentController) {
+        this.registration = registration;
+        this.studentController = studentController;
         this.scanner = new Scanner(System.in);
     }
     
@@ -16,6 +18,7 @@ public class SubjectController {
         int count = 1;
         for (Subject subject : registration.getAllSubjects()) {
             System.out.println(count + ". " + subject);
+            System.out.println("   " + subject.getCapacityInfo(registration.getEnrollment(subject.getSubjectId())));
             if (subject.hasPrerequisite()) {
                 System.out.println("   Prerequisite: " + subject.getPrerequisiteSubjectId());
             }
@@ -26,37 +29,38 @@ public class SubjectController {
     
     // View: Registration Page
     public void showRegistrationPage(String studentId) {
+        RegistrationMetrics metrics = registration.getMetrics();
+        long start = metrics.start();
         System.out.println("\n=== Subject Registration ===");
         System.out.println("Available subjects for registration:");
         
-        int count = 1;
-        for (Subject subject : registration.getAllSubjects()) {
-            if (!registration.isStudentRegistered(studentId, subject.getSubjectId())) {
-                System.out.println(count + ". " + subject.getSubjectName() + 
-                                 " (" + subject.getSubjectId() + ")");
-                System.out.println("   " + subject.getCapacityInfo());
-                
-                if (subject.hasPrerequisite()) {
-                    System.out.println("   Prerequisite: " + subject.getPrerequisiteSubjectId());
-                }
-                
-                // Check if can register
-                boolean canRegisterCap = registration.canRegisterWithCapacity(studentId, subject.getSubjectId());
-                boolean canRegisterNoCap = registration.canRegisterWithoutCapacity(studentId, subject.getSubjectId());
-                
-                if (!canRegisterCap && subject.getMaxCapacity() != -1) {
-                    System.out.println("   Status: FULL");
-                } else if (canRegisterCap || canRegisterNoCap) {
-                    System.out.println("   Status: Available");
-                } else {
-                    System.out.println("   Status: Cannot register");
-                }
-                System.out.println();
-                count++;
+        int[] count = {1};
+        registration.evaluateAll(studentId, (subject, status) -> {
+            if (status == RegistrationStatus.ALREADY_REGISTERED) {
+                return;
             }
-        }
+            System.out.println(count[0] + ". " + subject.getSubjectName() + 
+                             " (" + subject.getSubjectId() + ")");
+            System.out.println("   " + subject.getCapacityInfo(registration.getEnrollment(subject.getSubjectId())));
+            
+            if (subject.hasPrerequisite()) {
+                System.out.println("   Prerequisite: " + subject.getPrerequisiteSubjectId());
+            }
+            
+            if (status == RegistrationStatus.FULL) {
+                System.out.println("   Status: FULL");
+            } else if (status == RegistrationStatus.OK) {
+                System.out.println("   Status: Available");
+            } else {
+                System.out.println("   Status: Cannot register (" + status.getMessage() + ")");
+            }
+            System.out.println();
+            count[0]++;
+        });
+        // Listing only; the time spent waiting for input is not counted
+        metrics.stop(RegistrationMetrics.Operation.REGISTRATION_PAGE, start);
         
-        if (count == 1) {
+        if (count[0] == 1) {
             System.out.println("No subjects available for registration");
             return;
         }
@@ -74,36 +78,28 @@ public class SubjectController {
     private void registerForSubject(String studentId, String subjectId) {
         Subject subject = registration.getSubject(subjectId);
         
-        if (subject == null) {
-            System.out.println("Subject ID not found");
-            return;
-        }
-        
-        if (registration.isStudentRegistered(studentId, subjectId)) {
-            System.out.println("You are already registered for this subject");
-            return;
-        }
-        
-        // Check business rules
-        if (!registration.canRegisterWithCapacity(studentId, subjectId)) {
-            if (subject.getMaxCapacity() != -1 && !subject.canRegister()) {
-                System.out.println("Cannot register: Subject is full");
-            } else {
-                System.out.println("Cannot register: Requirements not met");
-            }
-            return;
-        }
-        
-        // Attempt registration
-        if (registration.registerStudent(studentId, subjectId)) {
-            System.out.println("Registration successful: " + subject.getSubjectName());
-            System.out.println("Returning to student profile...");
-            
-            // Show updated student profile
-            StudentController studentController = new StudentController();
-            studentController.showStudentProfile(studentId);
-        } else {
-            System.out.println("Registration failed");
+        // Business rules are checked as part of the registration itself
+        RegistrationStatus status = registration.register(studentId, subjectId);
+        switch (status) {
+            case OK:
+                System.out.println("Registration successful: " + subject.getSubjectName());
+                System.out.println("Returning to student profile...");
+                
+                // Show updated student profile
+                studentController.showStudentProfile(studentId);
+                break;
+            case UNKNOWN_SUBJECT:
+                System.out.println("Subject ID not found");
+                break;
+            case ALREADY_REGISTERED:
+                System.out.println("You are already registered for this subject");
+                break;
+            case SAVE_FAILED:
+                System.out.println("Registration failed");
+                break;
+            default:
+                System.out.println("Cannot register: " + status.getMessage());
+                break;
         }
     }
 }
\ No newline at end of file
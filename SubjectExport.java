@@ -0,0 +1,20 @@
+// SubjectExport.java - Regenerates subjects.csv from the current data files
+// Registering only updates the journal and the enrollment counter file, so
+// run this (while the application is stopped) whenever an up-to-date
+// subjects.csv is needed.
+//
+// Usage: java SubjectExport
+public class SubjectExport {
+    public static void main(String[] args) {
+        Registration registration = new Registration();
+        try {
+            registration.exportSubjects();
+            System.out.println("Wrote " + Registration.SUBJECTS_CSV + " with "
+                             + registration.getAllSubjects().size() + " subjects");
+        } catch (java.io.IOException e) {
+            System.err.println("Error exporting subjects: " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
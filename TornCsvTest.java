@@ -0,0 +1,183 @@
+// TornCsvTest.java - Cuts each data file mid-row and checks that the data still loads
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Writes a small data set with DataGenerator into a temporary directory and
+// cuts the last row of every CSV file short, the way an interrupted append
+// leaves it: students.csv in the middle of the row, subjects.csv right after
+// the last comma so the enrollment column is empty, and registrations.csv in
+// the middle of the subject id. A fresh JVM then loads the directory. The
+// load must succeed, the torn rows must be gone (neither the student, the
+// subject nor the pair, whole or cut, may exist), the other subjects must
+// all be there, and every file must end with a line break again. Exits with
+// status 1 if a check fails.
+//
+// Usage: java TornCsvTest
+public class TornCsvTest {
+    private static final String REGISTRATIONS_CSV = "registrations.csv";
+    private static final String REPORT = "--report"; // runs as the loading process
+    private static final String REPORT_PREFIX = "loaded,";
+    
+    // Where the last row is cut
+    private enum Cut { MIDDLE_OF_ROW, AFTER_LAST_COMMA, MIDDLE_OF_LAST_FIELD }
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals(REPORT)) {
+            report(args[1], args[2], args[3], args[4]);
+            return;
+        }
+        
+        Path dir = Files.createTempDirectory("torn-csv");
+        boolean failed = false;
+        try {
+            DataGenerator.generate(dir, 200, 20, 1_000, 42);
+            String[] student = cutLastRow(dir.resolve(Registration.STUDENTS_CSV), Cut.MIDDLE_OF_ROW);
+            String[] subject = cutLastRow(dir.resolve(Registration.SUBJECTS_CSV), Cut.AFTER_LAST_COMMA);
+            String[] pair = cutLastRow(dir.resolve(REGISTRATIONS_CSV), Cut.MIDDLE_OF_LAST_FIELD);
+            int subjectsLeft = countLines(dir.resolve(Registration.SUBJECTS_CSV)) - 1; // less the header
+            
+            String report = load(dir, student[0], subject[0], pair[0], pair[1]);
+            if (report == null) {
+                System.err.println("FAILED: the data did not load");
+                failed = true;
+            } else {
+                // loaded,<subjects>,<student present>,<subject present>,<pair present>
+                String[] fields = report.split(",");
+                if (Integer.parseInt(fields[1]) != subjectsLeft) {
+                    System.err.println("FAILED: " + fields[1] + " subjects loaded, expected " + subjectsLeft);
+                    failed = true;
+                }
+                if (Boolean.parseBoolean(fields[2])) {
+                    System.err.println("FAILED: the torn row of student " + student[0] + " was loaded");
+                    failed = true;
+                }
+                if (Boolean.parseBoolean(fields[3])) {
+                    System.err.println("FAILED: the torn row of subject " + subject[0] + " was loaded");
+                    failed = true;
+                }
+                if (Boolean.parseBoolean(fields[4])) {
+                    System.err.println("FAILED: the torn registration of " + pair[0] + " was loaded");
+                    failed = true;
+                }
+            }
+            for (String fileName : new String[] {Registration.STUDENTS_CSV, Registration.SUBJECTS_CSV,
+                                                 REGISTRATIONS_CSV}) {
+                byte[] content = Files.readAllBytes(dir.resolve(fileName));
+                if (content.length == 0 || content[content.length - 1] != '\n') {
+                    System.err.println("FAILED: " + fileName + " does not end with a line break");
+                    failed = true;
+                }
+            }
+        } finally {
+            deleteTree(dir);
+        }
+        System.out.println(failed ? "Torn CSV test failed" : "Torn CSV test passed");
+        System.exit(failed ? 1 : 0);
+    }
+    
+    // Truncates the file inside its last row, which also removes the final
+    // line break, and returns that row's fields as they were before the cut
+    private static String[] cutLastRow(Path file, Cut cut) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        int end = content.length - 1; // the final line break
+        int start = end;
+        while (start > 0 && content[start - 1] != '\n') {
+            start--;
+        }
+        String row = new String(content, start, end - start, StandardCharsets.US_ASCII);
+        int lastField = row.lastIndexOf(',') + 1;
+        int keep;
+        switch (cut) {
+            case MIDDLE_OF_ROW:
+                keep = row.length() / 2;
+                break;
+            case AFTER_LAST_COMMA:
+                keep = lastField;
+                break;
+            default:
+                keep = lastField + (row.length() - lastField) / 2;
+                break;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(start + keep);
+        }
+        return row.split(",");
+    }
+    
+    private static int countLines(Path file) throws IOException {
+        int lines = 0;
+        for (byte b : Files.readAllBytes(file)) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+    
+    // Loads the directory in a new JVM, which prints one report line;
+    // returns that line, or null if the load failed
+    private static String load(Path dir, String... torn) throws IOException, InterruptedException {
+        String[] command = new String[6 + torn.length];
+        command[0] = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        command[1] = "-Dregistration.watchFiles=false";
+        command[2] = "-cp";
+        command[3] = absoluteClassPath();
+        command[4] = TornCsvTest.class.getName();
+        command[5] = REPORT;
+        System.arraycopy(torn, 0, command, 6, torn.length);
+        Process loader = new ProcessBuilder(command).directory(dir.toFile())
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        String report = null;
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(loader.getInputStream()))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.startsWith(REPORT_PREFIX)) {
+                    report = line;
+                }
+            }
+        }
+        return loader.waitFor() == 0 ? report : null;
+    }
+    
+    // The loading side, run with the data directory as working directory.
+    // The pair counts whether its subject id is whole or as the cut left it.
+    private static void report(String studentId, String subjectId, String pairStudentId, String pairSubjectId) {
+        Registration registration = new Registration();
+        Collection<String> registered = registration.getRegisteredSubjectIds(pairStudentId);
+        String cutSubjectId = pairSubjectId.substring(0, pairSubjectId.length() / 2);
+        boolean pairPresent = registered.contains(pairSubjectId) || registered.contains(cutSubjectId);
+        System.out.println(REPORT_PREFIX + registration.getAllSubjects().size() + ","
+                         + (registration.getStudent(studentId) != null) + ","
+                         + (registration.getSubject(subjectId) != null) + "," + pairPresent);
+        System.exit(0);
+    }
+    
+    // The loader runs in the data directory, so relative entries would break
+    private static String absoluteClassPath() {
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparator);
+            }
+            classPath.append(Paths.get(entry).toAbsolutePath());
+        }
+        return classPath.toString();
+    }
+    
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
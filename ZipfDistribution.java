@@ -0,0 +1,46 @@
+// ZipfDistribution.java - Seeded Zipf sampler over a fixed number of items
+import java.util.Arrays;
+import java.util.Random;
+
+// Item popularity follows rank^-exponent, so a few items take most of the
+// draws. Ranks are assigned to items in a seeded random order, so the most
+// popular item is not simply item 0. An exponent of 0 gives a uniform choice.
+public class ZipfDistribution {
+    private final double[] cumulative; // cumulative probability by item
+    
+    public ZipfDistribution(int items, double exponent, Random random) {
+        int[] rankOf = new int[items];
+        for (int i = 0; i < items; i++) {
+            rankOf[i] = i + 1;
+        }
+        for (int i = items - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = rankOf[i];
+            rankOf[i] = rankOf[j];
+            rankOf[j] = swap;
+        }
+        
+        cumulative = new double[items];
+        double total = 0;
+        for (int i = 0; i < items; i++) {
+            total += Math.pow(rankOf[i], -exponent);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < items; i++) {
+            cumulative[i] /= total;
+        }
+    }
+    
+    // Returns an item index in [0, items)
+    public int next(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, cumulative.length - 1);
+    }
+    
+    public double probability(int item) {
+        return item == 0 ? cumulative[0] : cumulative[item] - cumulative[item - 1];
+    }
+}